@@ -0,0 +1,232 @@
+import task.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Двоичный формат снимка.
+// Заголовок: сигнатура "KNBN" и байт версии. Далее записи, каждая начинается с байта-тега типа:
+// id (varint), статус (байт), name и description (длина + 1 как varint, затем UTF-8; 0 — null),
+// id эпика для подзадачи (varint), байт флагов, продолжительность в минутах (zigzag varint),
+// время начала в минутах от эпохи (zigzag varint) и, если есть, секунды и наносекунды.
+// Тег 0 завершает файл: без него снимок считается оборванным.
+public final class BinarySnapshotFormat {
+    private static final byte[] MAGIC = {'K', 'N', 'B', 'N'};
+    private static final int VERSION = 1;
+
+    private static final int TAG_END = 0;
+    private static final int TAG_TASK = 1;
+    private static final int TAG_EPIC = 2;
+    private static final int TAG_SUBTASK = 3;
+
+    private static final int HAS_DURATION = 1;
+    private static final int HAS_START = 2;
+    private static final int START_HAS_SECONDS = 4;
+
+    private static final Status[] STATUSES = Status.values();
+
+    private BinarySnapshotFormat() {
+    }
+
+    // Проверка сигнатуры в начале файла
+    public static boolean isBinary(Path file) {
+        if (!Files.exists(file)) return false;
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] header = in.readNBytes(MAGIC.length);
+            if (header.length < MAGIC.length) return false;
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (header[i] != MAGIC[i]) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения данных из файла", e);
+        }
+    }
+
+    public static void write(OutputStream out, List<Task> tasks, List<Epic> epics, List<Subtask> subtasks)
+            throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        for (Task task : tasks) {
+            writeTask(out, task);
+        }
+        for (Epic epic : epics) {
+            writeTask(out, epic);
+        }
+        for (Subtask subtask : subtasks) {
+            writeTask(out, subtask);
+        }
+        out.write(TAG_END);
+    }
+
+    // Чтение снимка, каждая задача передаётся в consumer в порядке записи
+    public static void read(InputStream in, Consumer<Task> consumer) throws IOException {
+        byte[] header = in.readNBytes(MAGIC.length + 1);
+        if (header.length < MAGIC.length + 1) {
+            throw new ManagerSaveException("Повреждённый заголовок двоичного снимка");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                throw new ManagerSaveException("Файл не является двоичным снимком");
+            }
+        }
+        if (header[MAGIC.length] != VERSION) {
+            throw new ManagerSaveException("Неподдерживаемая версия двоичного снимка: " + header[MAGIC.length]);
+        }
+
+        while (true) {
+            int tag = readByte(in);
+            if (tag == TAG_END) return;
+            consumer.accept(readTask(in, tag));
+        }
+    }
+
+    private static void writeTask(OutputStream out, Task task) throws IOException {
+        switch (task.getType()) {
+            case TASK:
+                out.write(TAG_TASK);
+                break;
+            case EPIC:
+                out.write(TAG_EPIC);
+                break;
+            case SUBTASK:
+                out.write(TAG_SUBTASK);
+                break;
+        }
+        writeVarLong(out, task.getId() & 0xFFFFFFFFL);
+        out.write(task.getStatus().ordinal());
+        writeString(out, task.getName());
+        writeString(out, task.getDescription());
+        if (task.getType() == Type.SUBTASK) {
+            writeVarLong(out, ((Subtask) task).getIdEpic() & 0xFFFFFFFFL);
+        }
+
+        Duration duration = task.getDuration();
+        LocalDateTime startTime = task.getStartTime();
+        int flags = 0;
+        if (duration != null) flags |= HAS_DURATION;
+        if (startTime != null) {
+            flags |= HAS_START;
+            if (startTime.getSecond() != 0 || startTime.getNano() != 0) flags |= START_HAS_SECONDS;
+        }
+        out.write(flags);
+
+        if (duration != null) {
+            writeVarLong(out, zigzag(duration.toMinutes()));
+        }
+        if (startTime != null) {
+            long epochSecond = startTime.toEpochSecond(ZoneOffset.UTC);
+            writeVarLong(out, zigzag(Math.floorDiv(epochSecond, 60)));
+            if ((flags & START_HAS_SECONDS) != 0) {
+                writeVarLong(out, Math.floorMod(epochSecond, 60));
+                writeVarLong(out, startTime.getNano());
+            }
+        }
+    }
+
+    private static Task readTask(InputStream in, int tag) throws IOException {
+        int id = (int) readVarLong(in);
+        int statusOrdinal = readByte(in);
+        if (statusOrdinal >= STATUSES.length) {
+            throw new ManagerSaveException("Неизвестный статус в двоичном снимке: " + statusOrdinal);
+        }
+        Status status = STATUSES[statusOrdinal];
+        String name = readString(in);
+        String description = readString(in);
+
+        Task task;
+        switch (tag) {
+            case TAG_TASK:
+                task = new Task(name, description, status);
+                break;
+            case TAG_EPIC:
+                task = new Epic(name, description, status);
+                break;
+            case TAG_SUBTASK:
+                task = new Subtask(name, description, status, (int) readVarLong(in));
+                break;
+            default:
+                throw new ManagerSaveException("Неизвестный тип записи в двоичном снимке: " + tag);
+        }
+        task.setId(id);
+
+        int flags = readByte(in);
+        if ((flags & HAS_DURATION) != 0) {
+            task.setDuration(Duration.ofMinutes(unzigzag(readVarLong(in))));
+        }
+        if ((flags & HAS_START) != 0) {
+            long epochSecond = unzigzag(readVarLong(in)) * 60;
+            int nano = 0;
+            if ((flags & START_HAS_SECONDS) != 0) {
+                epochSecond += readVarLong(in);
+                nano = (int) readVarLong(in);
+            }
+            task.setStartTime(LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC));
+        }
+        return task;
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private static String readString(InputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) return null;
+        if (length - 1 > Integer.MAX_VALUE) {
+            throw new ManagerSaveException("Некорректная длина строки в двоичном снимке");
+        }
+        byte[] bytes = in.readNBytes((int) (length - 1));
+        if (bytes.length != length - 1) {
+            throw new EOFException();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(in);
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new ManagerSaveException("Некорректное число в двоичном снимке");
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) throw new EOFException();
+        return b;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,390 @@
+import task.Epic;
+import task.Status;
+import task.Subtask;
+import task.Task;
+import task.Type;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Потокобезопасный менеджер поверх InMemoryTaskManager: запись исключительная, чтение разделяемое
+public class ConcurrentTaskManager implements TaskManager {
+    private static final int MAX_QUEUED_VIEWS = 1024; // после этого читатель сам разбирает очередь
+
+    private final InMemoryTaskManager delegate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true); // честная, писатели не голодают
+    private final AtomicInteger lastId;
+
+    private final ConcurrentLinkedQueue<Task> views = new ConcurrentLinkedQueue<>(); // просмотры для истории
+    private final AtomicInteger queuedViews = new AtomicInteger();
+    private final ReentrantLock historyLock = new ReentrantLock(); // разбор очереди вне исключительного участка
+
+    // Свои блокировки построения для каждого снимка
+    private final Object tasksViewLock = new Object();
+    private final Object epicsViewLock = new Object();
+    private final Object subtasksViewLock = new Object();
+    private final Object prioritizedViewLock = new Object();
+    private final Object epicSubtasksViewLock = new Object();
+    private final Object snapshotLock = new Object();
+
+    // Опубликованные снимки, null — устарел
+    private volatile List<Task> tasksView;
+    private volatile List<Epic> epicsView;
+    private volatile List<Subtask> subtasksView;
+    private volatile Set<Task> prioritizedView;
+    private volatile List<Task> prioritizedListView;
+
+    public ConcurrentTaskManager() {
+        this(new InMemoryTaskManager());
+    }
+
+    public ConcurrentTaskManager(InMemoryTaskManager delegate) {
+        this.delegate = delegate;
+        this.lastId = new AtomicInteger(delegate.getLastId());
+        delegate.setIdAllocator(count -> lastId.getAndAdd(count) + 1);
+    }
+
+    @Override
+    public void addNewTask(Task task) {
+        write(() -> delegate.addNewTask(task));
+    }
+
+    @Override
+    public void addNewEpic(Epic epic) {
+        write(() -> delegate.addNewEpic(epic));
+    }
+
+    @Override
+    public void addNewSubtask(Subtask subtask) {
+        write(() -> delegate.addNewSubtask(subtask));
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        write(() -> delegate.updateTask(task));
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        write(() -> delegate.updateEpic(epic));
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        write(() -> delegate.updateSubtask(subtask));
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        return view(() -> delegate.findTask(id));
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        return view(() -> delegate.findEpic(id));
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        return view(() -> delegate.findSubtask(id));
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        List<Task> view = tasksView;
+        if (view != null) {
+            return view;
+        }
+        return readView(tasksViewLock, () -> tasksView == null ? tasksView = delegate.getTasks() : tasksView);
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        List<Epic> view = epicsView;
+        if (view != null) {
+            return view;
+        }
+        return readView(epicsViewLock, () -> epicsView == null ? epicsView = delegate.getEpics() : epicsView);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        List<Subtask> view = subtasksView;
+        if (view != null) {
+            return view;
+        }
+        return readView(subtasksViewLock,
+                () -> subtasksView == null ? subtasksView = delegate.getSubtasks() : subtasksView);
+    }
+
+    @Override
+    public List<Task> getTasks(int offset, int limit) {
+        return InMemoryTaskManager.page(getTasks(), offset, limit);
+    }
+
+    @Override
+    public List<Epic> getEpics(int offset, int limit) {
+        return InMemoryTaskManager.page(getEpics(), offset, limit);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(int offset, int limit) {
+        return InMemoryTaskManager.page(getSubtasks(), offset, limit);
+    }
+
+    @Override
+    public List<Subtask> printArrayIdSubtask(int idEpic) {
+        return readView(epicSubtasksViewLock, () -> delegate.printArrayIdSubtask(idEpic));
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        write(() -> delegate.deleteTask(id));
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        write(() -> delegate.deleteEpic(id));
+    }
+
+    @Override
+    public void deleteSubtask(int id) {
+        write(() -> delegate.deleteSubtask(id));
+    }
+
+    @Override
+    public void clearAllTasks() {
+        write(delegate::clearAllTasks);
+    }
+
+    @Override
+    public void clearAllEpics() {
+        write(delegate::clearAllEpics);
+    }
+
+    @Override
+    public void clearAllSubtasks() {
+        write(delegate::clearAllSubtasks);
+    }
+
+    // Перед выдачей история дополняется просмотрами из очереди
+    @Override
+    public List<Task> getHistory() {
+        return read(() -> {
+            historyLock.lock();
+            try {
+                drainViews();
+                return delegate.getHistory();
+            } finally {
+                historyLock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public Set<Task> getPrioritizedTasks() {
+        Set<Task> view = prioritizedView;
+        if (view != null) {
+            return view;
+        }
+        return readView(prioritizedViewLock, () -> prioritizedView == null
+                ? prioritizedView = delegate.getPrioritizedTasks() : prioritizedView);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(int offset, int limit) {
+        List<Task> view = prioritizedListView;
+        if (view == null) {
+            view = readView(prioritizedViewLock, () -> prioritizedListView == null
+                    ? prioritizedListView = delegate.getPrioritizedTasks(0, Integer.MAX_VALUE) : prioritizedListView);
+        }
+        return InMemoryTaskManager.page(view, offset, limit);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksAfter(LocalDateTime startTime, int id, int limit) {
+        return readView(prioritizedViewLock, () -> delegate.getPrioritizedTasksAfter(startTime, id, limit));
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(Status status) {
+        return read(() -> delegate.getTasksByStatus(status));
+    }
+
+    @Override
+    public List<Epic> getEpicsByStatus(Status status) {
+        return read(() -> delegate.getEpicsByStatus(status));
+    }
+
+    @Override
+    public List<Subtask> getSubtasksByStatus(Status status) {
+        return read(() -> delegate.getSubtasksByStatus(status));
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasksByStatus(int idEpic, Status status) {
+        return read(() -> delegate.getEpicSubtasksByStatus(idEpic, status));
+    }
+
+    @Override
+    public List<Task> searchTasks(String query, boolean matchAll) {
+        return read(() -> delegate.searchTasks(query, matchAll));
+    }
+
+    @Override
+    public int countByStatus(Type type, Status status) {
+        return read(() -> delegate.countByStatus(type, status));
+    }
+
+    @Override
+    public boolean isTasksIntersect(Task task1, Task task2) {
+        return delegate.isTasksIntersect(task1, task2);
+    }
+
+    @Override
+    public boolean isTaskIntersectWithAny(Task task) {
+        return read(() -> delegate.isTaskIntersectWithAny(task));
+    }
+
+    // Ленивые представления исходного менеджера копируются под блокировкой
+    @Override
+    public Iterable<Task> query(TaskQuery query) {
+        return read(() -> copyOf(delegate.query(query)));
+    }
+
+    @Override
+    public String explain(TaskQuery query) {
+        return read(() -> delegate.explain(query));
+    }
+
+    @Override
+    public Iterable<Task> getTasksInRange(LocalDateTime from, LocalDateTime to) {
+        return read(() -> copyOf(delegate.getTasksInRange(from, to)));
+    }
+
+    @Override
+    public Iterable<Task> getTasksAt(LocalDateTime time) {
+        return read(() -> copyOf(delegate.getTasksAt(time)));
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime from, Duration duration) {
+        return read(() -> delegate.findFreeSlot(from, duration));
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime from, Duration duration, LocalTime workStart, LocalTime workEnd) {
+        return read(() -> delegate.findFreeSlot(from, duration, workStart, workEnd));
+    }
+
+    @Override
+    public List<Task> addAllTasks(List<Task> tasks) {
+        return write(() -> delegate.addAllTasks(tasks));
+    }
+
+    @Override
+    public List<Subtask> addAllSubtasks(List<Subtask> subtasks) {
+        return write(() -> delegate.addAllSubtasks(subtasks));
+    }
+
+    @Override
+    public List<Task> scheduleTasks(List<ScheduleRequest> requests, LocalDateTime from) {
+        return write(() -> delegate.scheduleTasks(requests, from));
+    }
+
+    // Публикация среза меняет состояние исходного менеджера, как построение снимка
+    @Override
+    public TaskSnapshot snapshot() {
+        return readView(snapshotLock, delegate::snapshot);
+    }
+
+    // Пакет получает исходный менеджер и выполняется под исключительной блокировкой
+    @Override
+    public void batch(Consumer<TaskManager> operations) {
+        write(() -> delegate.batch(operations));
+    }
+
+    private void write(Runnable action) {
+        write(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // Изменение и пересчёт эпиков под исключительной блокировкой, после накопленных просмотров истории
+    private <T> T write(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            drainViews();
+            return action.get();
+        } finally {
+            tasksView = null;
+            epicsView = null;
+            subtasksView = null;
+            prioritizedView = null;
+            prioritizedListView = null;
+            lock.writeLock().unlock();
+        }
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Чтение, которое может строить кэш: читатели одного снимка строят его по очереди
+    private <T> T readView(Object viewLock, Supplier<T> action) {
+        return read(() -> {
+            synchronized (viewLock) {
+                return action.get();
+            }
+        });
+    }
+
+    // Поиск по id под разделяемой блокировкой, просмотр ставится в очередь для истории
+    private <T extends Task> T view(Supplier<T> lookup) {
+        return read(() -> {
+            T task = lookup.get();
+            if (task != null) {
+                views.add(task);
+                if (queuedViews.incrementAndGet() > MAX_QUEUED_VIEWS && historyLock.tryLock()) {
+                    try {
+                        drainViews();
+                    } finally {
+                        historyLock.unlock();
+                    }
+                }
+            }
+            return task;
+        });
+    }
+
+    // Вызывается под исключительной блокировкой или под разделяемой вместе с historyLock
+    private void drainViews() {
+        for (Task task = views.poll(); task != null; task = views.poll()) {
+            queuedViews.decrementAndGet();
+            delegate.recordView(task);
+        }
+    }
+
+    private static List<Task> copyOf(Iterable<Task> tasks) {
+        List<Task> copy = new ArrayList<>();
+        tasks.forEach(copy::add);
+        return Collections.unmodifiableList(copy);
+    }
+}
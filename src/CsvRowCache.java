@@ -0,0 +1,53 @@
+import task.Task;
+import task.Type;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+
+// Кэш строк CSV-снимка: строка кодируется заново, только если в срезе у задачи новая копия
+public class CsvRowCache {
+    private final CsvTaskCodec codec = new CsvTaskCodec();
+    private final EnumMap<Type, IntObjectMap<Row>> rows = new EnumMap<>(Type.class);
+    private long encodedRows; // сколько строк закодировано за всё время, для мониторинга
+
+    public CsvRowCache() {
+        for (Type type : Type.values()) {
+            rows.put(type, new IntObjectMap<>());
+        }
+    }
+
+    // Запись строк всех задач одного типа из среза (TaskSnapshot)
+    public synchronized void write(OutputStream out, Type type, Iterable<? extends Task> tasks) throws IOException {
+        IntObjectMap<Row> previous = rows.get(type);
+        IntObjectMap<Row> current = new IntObjectMap<>(previous.size());
+        for (Task task : tasks) {
+            Row row = previous.get(task.getId());
+            if (row == null || row.task != task) {
+                codec.encode(task);
+                byte[] bytes = new byte[codec.length() + 1];
+                System.arraycopy(codec.buffer(), 0, bytes, 0, codec.length());
+                bytes[codec.length()] = '\n';
+                row = new Row(task, bytes);
+                encodedRows++;
+            }
+            current.put(task.getId(), row);
+            out.write(row.bytes);
+        }
+        rows.put(type, current); // строки удалённых задач не переносятся
+    }
+
+    public synchronized long getEncodedRows() {
+        return encodedRows;
+    }
+
+    private static class Row {
+        final Task task; // копия задачи из среза, по которой закодирована строка
+        final byte[] bytes;
+
+        Row(Task task, byte[] bytes) {
+            this.task = task;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,495 @@
+import task.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// Кодек строки CSV-снимка: id,type,name,status,description,epic,duration,startTime.
+// Строка пишется прямо в переиспользуемый байтовый буфер и разбирается прямо из байтов,
+// поэтому на сохранение строки объекты не создаются, а при чтении создаются только сами задачи.
+// name и description, содержащие запятую, кавычку, обратную косую черту или перевод строки,
+// пишутся в кавычках: кавычка удваивается, а \n, \r и \ экранируются обратной косой чертой.
+// Так в строке никогда нет настоящего перевода строки, и файл можно делить по '\n'.
+// Экземпляр не потокобезопасен: у каждого потока свой кодек.
+public class CsvTaskCodec {
+    public static final String HEADER = "id,type,name,status,description,epic,duration,startTime";
+
+    private static final int MAX_FIELDS = 8;
+
+    private static final byte[][] TYPE_NAMES = enumNames(Type.values());
+    private static final byte[][] STATUS_NAMES = enumNames(Status.values());
+    private static final Type[] TYPES = Type.values();
+    private static final Status[] STATUSES = Status.values();
+    private static final byte[] NULL = ascii("null");
+
+    private byte[] buffer = new byte[256]; // буфер кодирования
+    private int length;
+
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private final boolean[] fieldQuoted = new boolean[MAX_FIELDS];
+    private byte[] scratch = new byte[256]; // буфер декодирования строк
+
+    // Кодирование задачи в строку без перевода строки. Результат — первые length() байт buffer()
+    public void encode(Task task) {
+        encode("", task);
+    }
+
+    // Кодирование с ASCII-префиксом (например, тип записи журнала)
+    public void encode(String prefix, Task task) {
+        length = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            put((byte) prefix.charAt(i));
+        }
+        putLong(task.getId());
+        put((byte) ',');
+        put(TYPE_NAMES[task.getType().ordinal()]);
+        put((byte) ',');
+        putString(task.getName());
+        put((byte) ',');
+        put(STATUS_NAMES[task.getStatus().ordinal()]);
+        put((byte) ',');
+        putString(task.getDescription());
+        put((byte) ',');
+        if (task.getType() == Type.SUBTASK) {
+            putLong(((Subtask) task).getIdEpic());
+        }
+        put((byte) ',');
+
+        // Добавляем продолжительность
+        Duration duration = task.getDuration();
+        if (duration != null) {
+            putLong(duration.toMinutes());
+        } else {
+            put(NULL);
+        }
+        put((byte) ',');
+
+        // Добавляем время начала
+        LocalDateTime startTime = task.getStartTime();
+        if (startTime != null) {
+            putDateTime(startTime);
+        } else {
+            put(NULL);
+        }
+    }
+
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // Запись закодированной строки с переводом строки
+    public void writeLine(OutputStream out) throws IOException {
+        put((byte) '\n');
+        out.write(buffer, 0, length);
+        length--;
+    }
+
+    public Task decode(String row) {
+        ByteBuffer bytes = ByteBuffer.wrap(row.getBytes(StandardCharsets.UTF_8));
+        return decode(bytes, 0, bytes.limit());
+    }
+
+    // Разбор одной строки [start, end) без перевода строки. Некорректная строка даёт null
+    public Task decode(ByteBuffer in, int start, int end) {
+        if (end > start && in.get(end - 1) == '\r') end--;
+        if (isBlank(in, start, end)) return null;
+
+        int fields = splitFields(in, start, end, true);
+        if (fields < 0) {
+            fields = splitFields(in, start, end, false); // старый снимок: кавычки в тексте без экранирования
+        }
+        if (fields < 5) return null; // Минимум требуемых полей
+
+        try {
+            int id = parseInt(in, fieldStart[0], fieldEnd[0]);
+            Type type = parseEnum(in, fieldStart[1], fieldEnd[1], TYPE_NAMES, TYPES);
+            Status status = parseEnum(in, fieldStart[3], fieldEnd[3], STATUS_NAMES, STATUSES);
+            if (type == null || status == null) return null;
+            String name = decodeString(in, 2);
+            String description = decodeString(in, 4);
+
+            // Старые снимки не писали колонку epic у задач и эпиков:
+            // тогда продолжительность и время начала сдвинуты на одну колонку влево
+            int durationField = type == Type.SUBTASK || fields == MAX_FIELDS ? 6 : 5;
+
+            Task task;
+            switch (type) {
+                case TASK:
+                    task = new Task(name, description, status);
+                    break;
+                case EPIC:
+                    task = new Epic(name, description, status);
+                    break;
+                default:
+                    if (fields < 6) return null; // Подзадача требует ID эпика
+                    task = new Subtask(name, description, status, parseInt(in, fieldStart[5], fieldEnd[5]));
+                    break;
+            }
+            task.setId(id);
+
+            if (fields > durationField && !equalsBytes(in, fieldStart[durationField], fieldEnd[durationField], NULL)) {
+                task.setDuration(Duration.ofMinutes(parseLong(in, fieldStart[durationField], fieldEnd[durationField])));
+            }
+            int startField = durationField + 1;
+            if (fields > startField && !equalsBytes(in, fieldStart[startField], fieldEnd[startField], NULL)) {
+                task.setStartTime(parseDateTime(in, fieldStart[startField], fieldEnd[startField]));
+            }
+            return task;
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return null; // Возвращаем null, если парсинг не удался
+        }
+    }
+
+    // Деление строки на поля. Возвращает количество полей или -1 при нарушении правил кавычек
+    private int splitFields(ByteBuffer in, int start, int end, boolean honorQuotes) {
+        int fields = 0;
+        int i = start;
+        while (fields < MAX_FIELDS) {
+            if (honorQuotes && i < end && in.get(i) == '"') {
+                int contentStart = i + 1;
+                int j = contentStart;
+                while (j < end) {
+                    if (in.get(j) == '"') {
+                        if (j + 1 < end && in.get(j + 1) == '"') {
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    j++;
+                }
+                if (j >= end || (j + 1 < end && in.get(j + 1) != ',')) {
+                    return -1; // незакрытая кавычка или мусор после неё
+                }
+                fieldStart[fields] = contentStart;
+                fieldEnd[fields] = j;
+                fieldQuoted[fields] = true;
+                fields++;
+                i = j + 1;
+            } else {
+                int j = i;
+                while (j < end && in.get(j) != ',') j++;
+                fieldStart[fields] = i;
+                fieldEnd[fields] = j;
+                fieldQuoted[fields] = false;
+                fields++;
+                i = j;
+            }
+            if (i >= end) break;
+            i++; // пропускаем запятую
+        }
+        return fields;
+    }
+
+    private String decodeString(ByteBuffer in, int field) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        ensureScratch(end - start);
+        int length = 0;
+        if (!fieldQuoted[field]) {
+            in.get(start, scratch, 0, end - start);
+            length = end - start;
+        } else {
+            for (int i = start; i < end; i++) {
+                byte b = in.get(i);
+                if (b == '"') {
+                    i++; // удвоенная кавычка
+                } else if (b == '\\' && i + 1 < end) {
+                    byte next = in.get(i + 1);
+                    if (next == 'n') {
+                        b = '\n';
+                        i++;
+                    } else if (next == 'r') {
+                        b = '\r';
+                        i++;
+                    } else if (next == '\\') {
+                        i++;
+                    }
+                }
+                scratch[length++] = b;
+            }
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void ensureScratch(int size) {
+        if (scratch.length < size) {
+            scratch = new byte[Math.max(size, scratch.length * 2)];
+        }
+    }
+
+    private void put(byte b) {
+        if (length == buffer.length) {
+            grow(length + 1);
+        }
+        buffer[length++] = b;
+    }
+
+    private void put(byte[] bytes) {
+        if (length + bytes.length > buffer.length) {
+            grow(length + bytes.length);
+        }
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void grow(int minCapacity) {
+        byte[] bigger = new byte[Math.max(minCapacity, buffer.length * 2)];
+        System.arraycopy(buffer, 0, bigger, 0, length);
+        buffer = bigger;
+    }
+
+    private void putLong(long value) {
+        if (value < 0) {
+            put((byte) '-');
+        } else {
+            value = -value; // работаем с отрицательным числом, чтобы не переполниться на Long.MIN_VALUE
+        }
+        int digitsStart = length;
+        do {
+            put((byte) ('0' - value % 10));
+            value /= 10;
+        } while (value != 0);
+        reverse(digitsStart, length - 1);
+    }
+
+    private void putPadded(int value, int width) {
+        int digitsStart = length;
+        for (int i = 0; i < width || value != 0; i++) {
+            put((byte) ('0' + value % 10));
+            value /= 10;
+        }
+        reverse(digitsStart, length - 1);
+    }
+
+    private void reverse(int from, int to) {
+        while (from < to) {
+            byte tmp = buffer[from];
+            buffer[from++] = buffer[to];
+            buffer[to--] = tmp;
+        }
+    }
+
+    // Формат ISO_LOCAL_DATE_TIME: секунды пишутся, если они или наносекунды не нулевые,
+    // дробная часть — без завершающих нулей
+    private void putDateTime(LocalDateTime time) {
+        int year = time.getYear();
+        if (year > 9999) {
+            put((byte) '+');
+        } else if (year < 0) {
+            put((byte) '-');
+            year = -year;
+        }
+        putPadded(year, 4);
+        put((byte) '-');
+        putPadded(time.getMonthValue(), 2);
+        put((byte) '-');
+        putPadded(time.getDayOfMonth(), 2);
+        put((byte) 'T');
+        putPadded(time.getHour(), 2);
+        put((byte) ':');
+        putPadded(time.getMinute(), 2);
+        int second = time.getSecond();
+        int nano = time.getNano();
+        if (second != 0 || nano != 0) {
+            put((byte) ':');
+            putPadded(second, 2);
+            if (nano != 0) {
+                put((byte) '.');
+                int digits = 9;
+                while (nano % 10 == 0) {
+                    nano /= 10;
+                    digits--;
+                }
+                putPadded(nano, digits);
+            }
+        }
+    }
+
+    // Строка пишется в UTF-8 вручную, без промежуточного массива из String.getBytes
+    private void putString(String value) {
+        if (value == null) {
+            put(NULL); // как и раньше, null пишется словом null
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\\' || c == '\n' || c == '\r';
+        }
+        if (quote) put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (quote) {
+                    if (c == '"') {
+                        put((byte) '"');
+                    } else if (c == '\\') {
+                        put((byte) '\\');
+                    } else if (c == '\n') {
+                        put((byte) '\\');
+                        c = 'n';
+                    } else if (c == '\r') {
+                        put((byte) '\\');
+                        c = 'r';
+                    }
+                }
+                put((byte) c);
+            } else if (c < 0x800) {
+                put((byte) (0xC0 | (c >> 6)));
+                put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                put((byte) (0xF0 | (codePoint >> 18)));
+                put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                put((byte) '?'); // одиночный суррогат, как в String.getBytes
+            } else {
+                put((byte) (0xE0 | (c >> 12)));
+                put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        if (quote) put((byte) '"');
+    }
+
+    private static <E extends Enum<E>> E parseEnum(ByteBuffer in, int start, int end, byte[][] names, E[] values) {
+        for (int i = 0; i < names.length; i++) {
+            if (equalsBytes(in, start, end, names[i])) return values[i];
+        }
+        return null;
+    }
+
+    private static int parseInt(ByteBuffer in, int start, int end) {
+        long value = parseLong(in, start, end);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Число вне диапазона int");
+        }
+        return (int) value;
+    }
+
+    private static long parseLong(ByteBuffer in, int start, int end) {
+        boolean negative = false;
+        int i = start;
+        if (i < end && (in.get(i) == '-' || in.get(i) == '+')) {
+            negative = in.get(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            throw new NumberFormatException("Некорректное число");
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = in.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Некорректное число");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // Разбор ISO_LOCAL_DATE_TIME: [+|-]yyyy-MM-ddTHH:mm[:ss[.nnnnnnnnn]]
+    private static LocalDateTime parseDateTime(ByteBuffer in, int start, int end) {
+        int dateEnd = start;
+        while (dateEnd < end && in.get(dateEnd) != 'T') dateEnd++;
+        if (dateEnd == end || dateEnd - start < 10) {
+            throw new DateTimeException("Некорректное время");
+        }
+        int year = parseInt(in, start, dateEnd - 6);
+        expect(in, dateEnd - 6, '-');
+        int month = parseDigits(in, dateEnd - 5, 2);
+        expect(in, dateEnd - 3, '-');
+        int day = parseDigits(in, dateEnd - 2, 2);
+
+        int i = dateEnd + 1;
+        if (end - i < 5) {
+            throw new DateTimeException("Некорректное время");
+        }
+        int hour = parseDigits(in, i, 2);
+        expect(in, i + 2, ':');
+        int minute = parseDigits(in, i + 3, 2);
+        i += 5;
+
+        int second = 0;
+        int nano = 0;
+        if (i < end) {
+            expect(in, i, ':');
+            if (end - i < 3) {
+                throw new DateTimeException("Некорректное время");
+            }
+            second = parseDigits(in, i + 1, 2);
+            i += 3;
+            if (i < end) {
+                expect(in, i, '.');
+                int digits = end - i - 1;
+                if (digits < 1 || digits > 9) {
+                    throw new DateTimeException("Некорректное время");
+                }
+                nano = parseDigits(in, i + 1, digits);
+                for (int k = digits; k < 9; k++) {
+                    nano *= 10;
+                }
+            }
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+    private static int parseDigits(ByteBuffer in, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = in.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new DateTimeException("Некорректное время");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static void expect(ByteBuffer in, int index, char expected) {
+        if (in.get(index) != expected) {
+            throw new DateTimeException("Некорректное время");
+        }
+    }
+
+    private static boolean equalsBytes(ByteBuffer in, int start, int end, byte[] expected) {
+        if (end - start != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (in.get(start + i) != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean isBlank(ByteBuffer in, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = in.get(i);
+            if (b != ' ' && b != '\t' && b != '\r') return false;
+        }
+        return true;
+    }
+
+    private static byte[][] enumNames(Enum<?>[] values) {
+        byte[][] names = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = ascii(values[i].name());
+        }
+        return names;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -1,241 +1,654 @@
 import task.*;
 
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.time.Duration;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
-public class FileBackedTaskManager extends InMemoryTaskManager {
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String BATCH_BEGIN = "BEG";
+    private static final String BATCH_END = "END";
     private final File saveFile;
+    private final TaskJournal journal; // null, если менеджер работает в режиме полной перезаписи файла
+    private final CsvTaskCodec journalCodec = new CsvTaskCodec(); // используется под stateLock
+    private final CsvRowCache rowCache = new CsvRowCache(); // строки CSV-снимка по копиям задач из среза
+    private boolean journalAttached; // журнал принадлежит этому менеджеру (загружен или начат со снимка)
+    private List<byte[]> batchRecords; // записи журнала текущего пакета, null вне пакета
+    private boolean batchDirty; // в текущем пакете была мутация, требующая сохранения
+    private final Object stateLock = new Object(); // мутации и срез состояния для снимка
+    private final Object checkpointLock = new Object(); // одновременно пишется только один снимок
+    private volatile SnapshotFormat snapshotFormat = SnapshotFormat.CSV;
+    private volatile GroupCommitWriter groupCommit; // отложенная запись снимка, null — запись на каждую мутацию
 
     public FileBackedTaskManager(File saveFile) {
+        this(saveFile, false);
+    }
+
+    // В режиме журнала мутации дописываются в <saveFile>.journal, снимок пишется в checkpoint()
+    public FileBackedTaskManager(File saveFile, boolean journalMode) {
         super();
         this.saveFile = saveFile;
+        this.journal = journalMode ? new TaskJournal(journalPath(saveFile)) : null;
     }
 
     // Загрузка данных из файла
     public static FileBackedTaskManager loadFromFile(File file) {
-        FileBackedTaskManager manager = new FileBackedTaskManager(file);
+        return loadFromFile(file, false);
+    }
 
-        if (!file.exists()) return manager;
+    public static FileBackedTaskManager loadFromFile(File file, boolean journalMode) {
+        return loadFromFile(file, journalMode, false);
+    }
 
-        try {
-            List<String> lines = Files.readAllLines(file.toPath());
-            if (lines.size() <= 1) return manager;
-
-            // Пропускаем заголовок и обрабатываем задачи
-            for (int i = 1; i < lines.size(); i++) {
-                String line = lines.get(i);
-                if (line.isEmpty() || line.isBlank()) continue;
-
-                Task task = fromString(line);
-                if (task != null) {
-                    switch (task.getType()) {
-                        case TASK:
-                            manager.tasks.put(task.getId(), task);
-                            break;
-                        case EPIC:
-                            Epic epic = (Epic) task;
-                            manager.epics.put(epic.getId(), epic);
-                            break;
-                        case SUBTASK:
-                            Subtask subtask = (Subtask) task;
-                            manager.subTasks.put(subtask.getId(), subtask);
-                            // Добавляем подзадачу в эпик сразу
-                            Epic parentEpic = manager.epics.get(subtask.getIdEpic());
-                            if (parentEpic != null) {
-                                parentEpic.addIdSubtask(subtask.getId());
-                            }
-                            break;
-                    }
+    // Загрузка снимка и журнала; при parallel CSV разбирается и эпики пересчитываются в общем пуле ForkJoin
+    public static FileBackedTaskManager loadFromFile(File file, boolean journalMode, boolean parallel) {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, journalMode);
+        TaskJournal existingJournal = journalMode ? manager.journal : new TaskJournal(journalPath(file));
+        ForkJoinPool pool = parallel ? ForkJoinPool.commonPool() : null;
+
+        // Формат определяется по сигнатуре, дальнейшие снимки пишутся в том же формате
+        manager.snapshotFormat = readSnapshot(file, manager::putLoaded, pool);
+
+        // Записи пакета применяются только вместе с завершающей записью END
+        List<String> records = existingJournal.readAll();
+        List<String> batch = null;
+        for (String record : records) {
+            if (record.equals(BATCH_BEGIN)) {
+                batch = new ArrayList<>();
+            } else if (record.equals(BATCH_END)) {
+                if (batch != null) {
+                    batch.forEach(manager::applyJournalRecord);
                 }
+                batch = null;
+            } else if (batch != null) {
+                batch.add(record);
+            } else {
+                manager.applyJournalRecord(record);
             }
+        }
 
-            // Обновляем статус эпика после добавления всех подзадач
-            for (Epic epic : manager.epics.values()) {
-                manager.updateEpicStatus(epic.getId());
+        // Индексы и окна эпиков строятся по всем подзадачам, затем статус каждого эпика по его счётчикам
+        manager.rebuildIndexes();
+        if (pool != null) {
+            pool.submit(() -> manager.epics.values().parallelStream().forEach(manager::updateLoadedEpic)).join();
+        } else {
+            manager.epics.values().forEach(manager::updateLoadedEpic);
+        }
+        manager.reindexEpicStatuses();
+
+        if (journalMode && batch != null) {
+            // Оборванный пакет остался в журнале: без сброса новые записи попали бы внутрь него
+            manager.attachJournal();
+        } else if (journalMode) {
+            manager.journalAttached = true;
+        } else if (!records.isEmpty()) {
+            // Журнал от прошлого запуска в режиме журнала: переносим его в снимок
+            manager.save();
+            existingJournal.reset();
+        }
+        return manager;
+    }
+
+    // Запись полного снимка и сброс журнала: под stateLock только срез и переключение журнала
+    public void checkpoint() {
+        synchronized (checkpointLock) {
+            SnapshotBody body;
+            long segment;
+            synchronized (stateLock) {
+                if (isInBatch()) {
+                    throw new IllegalStateException("Снимок нельзя записать внутри пакета");
+                }
+                if (journal == null && groupCommit == null) {
+                    save(); // снимок пишут только мутации под этой же блокировкой
+                    return;
+                }
+                if (journal != null && !journalAttached) {
+                    attachJournal();
+                    return;
+                }
+                body = prepareSnapshot();
+                segment = journal != null ? journal.rotate() : 0;
+            }
+            writeSnapshot(saveFile, body);
+            if (journal != null) {
+                journal.deleteSegmentsUpTo(segment);
             }
+        }
+    }
 
-        } catch (IOException e) {
-            throw new ManagerSaveException("Ошибка чтения данных из файла", e);
+    // Пакет выполняется под stateLock и сохраняется один раз: снимком или записями между BEG и END
+    @Override
+    public void batch(Consumer<TaskManager> operations) {
+        synchronized (stateLock) {
+            if (isInBatch()) {
+                super.batch(operations);
+                return;
+            }
+            batchRecords = new ArrayList<>();
+            batchDirty = false;
+            try {
+                super.batch(operations);
+            } finally {
+                batchRecords = null;
+                batchDirty = false;
+            }
         }
+    }
 
-        return manager;
+    @Override
+    protected void onBatchCommit() {
+        if (journal == null) {
+            if (batchDirty && groupCommit != null) {
+                groupCommit.markDirty();
+            } else if (batchDirty) {
+                save();
+            }
+        } else if (!batchRecords.isEmpty()) {
+            if (!journalAttached) {
+                attachJournal();
+            }
+            List<byte[]> records = new ArrayList<>(batchRecords.size() + 2);
+            records.add(BATCH_BEGIN.getBytes(StandardCharsets.US_ASCII));
+            records.addAll(batchRecords);
+            records.add(BATCH_END.getBytes(StandardCharsets.US_ASCII));
+            journal.append(records);
+        }
     }
 
-    // Преобразование строки в объект Task / Epic / Subtask
-    private static Task fromString(String value) {
-        String[] parts = value.split(",");
-        if (parts.length < 5) return null;  // Минимум требуемых полей
+    // Групповая запись: снимок пишет отдельный поток раз в windowMillis или за maxOps мутаций
+    public void enableGroupCommit(long windowMillis, int maxOps) {
+        synchronized (stateLock) {
+            if (journal != null) {
+                throw new IllegalStateException("Групповая запись доступна только в режиме полной перезаписи файла");
+            }
+            if (groupCommit != null) {
+                throw new IllegalStateException("Групповая запись уже включена");
+            }
+            groupCommit = new GroupCommitWriter(this::checkpoint, windowMillis, maxOps);
+        }
+    }
 
-        try {
-            int id = Integer.parseInt(parts[0]);
-            Type type = Type.valueOf(parts[1]);
-            String name = parts[2];
-            Status status = Status.valueOf(parts[3]);
-            String description = parts[4];
-
-            Task task = null;
-            switch (type) {
+    // После возврата все предыдущие мутации записаны в файл (в режиме журнала — с fsync)
+    public void flush() {
+        GroupCommitWriter writer = groupCommit;
+        if (writer != null) {
+            writer.flush();
+        } else if (journal != null) {
+            synchronized (stateLock) {
+                journal.sync();
+            }
+        }
+    }
+
+    // Формат снимков; смена формата и checkpoint() переписывают снимок в новом формате
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = snapshotFormat;
+    }
+
+    // Преобразование файла снимка в другой формат (CSV <-> BINARY). Журнал не учитывается
+    public static void convert(File source, File target, SnapshotFormat format) {
+        List<Task> taskSnapshot = new ArrayList<>();
+        List<Epic> epicSnapshot = new ArrayList<>();
+        List<Subtask> subtaskSnapshot = new ArrayList<>();
+        readSnapshot(source, task -> {
+            switch (task.getType()) {
                 case TASK:
-                    task = new Task(name, description, status);
+                    taskSnapshot.add(task);
                     break;
                 case EPIC:
-                    task = new Epic(name, description, status);
+                    epicSnapshot.add((Epic) task);
                     break;
                 case SUBTASK:
-                    if (parts.length < 6) return null;  // Подзадача требует ID эпика
-                    int epicId = Integer.parseInt(parts[5]);
-                    task = new Subtask(name, description, status, epicId);
+                    subtaskSnapshot.add((Subtask) task);
                     break;
             }
+        }, null);
+        writeSnapshot(target, snapshotBody(format, taskSnapshot, epicSnapshot, subtaskSnapshot));
+    }
 
-            if (task != null) {
-                task.setId(id);
+    public boolean isJournalMode() {
+        return journal != null;
+    }
 
-                // Парсим продолжительность, если она есть
-                if (parts.length > 6 && !parts[6].equals("null")) {
-                    task.setDuration(Duration.ofMinutes(Long.parseLong(parts[6])));
-                }
+    // Размер активного файла журнала в байтах
+    public long getJournalBytes() {
+        synchronized (stateLock) {
+            return journal != null ? journal.getBytes() : 0;
+        }
+    }
 
-                // Парсим время начала, если оно есть
-                if (parts.length > 7 && !parts[7].equals("null")) {
-                    task.setStartTime(LocalDateTime.parse(parts[7], formatter));
+    // Количество записей в активном файле журнала
+    public long getJournalRecords() {
+        synchronized (stateLock) {
+            return journal != null ? journal.getRecords() : 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        GroupCommitWriter writer = groupCommit;
+        if (writer != null) {
+            writer.close();
+            groupCommit = null;
+        }
+        if (journal != null) {
+            synchronized (stateLock) {
+                journal.close();
+            }
+        }
+    }
+
+    // Чтение снимка любого формата, возвращает формат файла (CSV, если файла нет)
+    private static SnapshotFormat readSnapshot(File file, Consumer<Task> consumer, ForkJoinPool pool) {
+        if (!file.exists()) {
+            return SnapshotFormat.CSV;
+        }
+        try {
+            if (BinarySnapshotFormat.isBinary(file.toPath())) {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+                    BinarySnapshotFormat.read(in, consumer);
                 }
+                return SnapshotFormat.BINARY;
             }
 
-            return task;
+            if (pool != null) {
+                MappedCsvReader.readParallel(file.toPath(), pool).forEach(consumer);
+            } else {
+                MappedCsvReader.read(file.toPath(), consumer);
+            }
+            return SnapshotFormat.CSV;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения данных из файла", e);
+        }
+    }
+
+    private static Path journalPath(File saveFile) {
+        return new File(saveFile.getPath() + JOURNAL_SUFFIX).toPath();
+    }
+
+    // Вызывается параллельно для разных эпиков, индекс статусов эпиков восстанавливается после всех
+    private void updateLoadedEpic(Epic epic) {
+        setDerivedStatus(epic);
+    }
+
+    // Добавление или замена загруженной задачи с привязкой подзадач к эпикам
+    private void putLoaded(Task task) {
+        switch (task.getType()) {
+            case TASK:
+                tasks.put(task.getId(), task);
+                break;
+            case EPIC:
+                Epic epic = (Epic) task;
+                Epic previousEpic = epics.put(epic.getId(), epic);
+                if (previousEpic != null) {
+                    epic.setSubtaskIds(previousEpic.getSubtaskIds());
+                }
+                break;
+            case SUBTASK:
+                Subtask subtask = (Subtask) task;
+                Subtask previous = subTasks.put(subtask.getId(), subtask);
+                if (previous != null && previous.getIdEpic() == subtask.getIdEpic()) {
+                    break;
+                }
+                if (previous != null) {
+                    Epic oldEpic = epics.get(previous.getIdEpic());
+                    if (oldEpic != null) {
+                        oldEpic.deleteEpicSubtask(previous.getId());
+                    }
+                }
+                // Добавляем подзадачу в эпик сразу
+                Epic parentEpic = epics.get(subtask.getIdEpic());
+                if (parentEpic != null) {
+                    parentEpic.addIdSubtask(subtask.getId());
+                }
+                break;
+        }
+    }
+
+    // Удаление загруженной задачи вместе с зависимыми подзадачами
+    private void removeLoaded(Type type, int id) {
+        switch (type) {
+            case TASK:
+                tasks.remove(id);
+                break;
+            case EPIC:
+                Epic epic = epics.remove(id);
+                if (epic != null) {
+                    epic.getSubtaskIds().forEach(subTasks::remove);
+                }
+                break;
+            case SUBTASK:
+                Subtask subtask = subTasks.remove(id);
+                if (subtask != null) {
+                    Epic parentEpic = epics.get(subtask.getIdEpic());
+                    if (parentEpic != null) {
+                        parentEpic.deleteEpicSubtask(id);
+                    }
+                }
+                break;
+        }
+    }
+
+    private void clearLoaded(Type type) {
+        switch (type) {
+            case TASK:
+                tasks.clear();
+                break;
+            case EPIC:
+                epics.clear();
+                subTasks.clear();
+                break;
+            case SUBTASK:
+                subTasks.clear();
+                for (Epic epic : epics.values()) {
+                    epic.clearSubtaskArray();
+                }
+                break;
+        }
+    }
+
+    // Проигрывание записи журнала: PUT, DEL, CLR описывают итоговое состояние
+    private void applyJournalRecord(String record) {
+        String[] parts = record.split(",", 2);
+        if (parts.length < 2) return;
+        try {
+            switch (parts[0]) {
+                case "PUT":
+                    Task task = journalCodec.decode(parts[1]);
+                    if (task != null) {
+                        putLoaded(task);
+                    }
+                    break;
+                case "DEL":
+                    String[] key = parts[1].split(",");
+                    removeLoaded(Type.valueOf(key[0]), Integer.parseInt(key[1]));
+                    break;
+                case "CLR":
+                    clearLoaded(Type.valueOf(parts[1]));
+                    break;
+            }
         } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
-            return null;  // Возвращаем null, если парсинг не удался
+            // Некорректная запись пропускается так же, как некорректная строка снимка
         }
     }
 
+    // Сохранение изменённой задачи: запись в журнал или полная перезапись файла
+    private void persistPut(Task task) {
+        if (journal == null) {
+            saveOrDefer();
+        } else if (isStored(task)) { // отклонённое обновление в журнал не попадает
+            journalCodec.encode("PUT,", task);
+            appendToJournal(journalCodec.buffer(), journalCodec.length());
+        }
+    }
+
+    private boolean isStored(Task task) {
+        switch (task.getType()) {
+            case TASK:
+                return tasks.get(task.getId()) == task;
+            case EPIC:
+                return epics.get(task.getId()) == task;
+            case SUBTASK:
+                return subTasks.get(task.getId()) == task;
+            default:
+                return false;
+        }
+    }
+
+    private void persistRemove(Type type, int id) {
+        if (journal == null) {
+            saveOrDefer();
+        } else {
+            byte[] record = ("DEL," + type + "," + id).getBytes(StandardCharsets.US_ASCII);
+            appendToJournal(record, record.length);
+        }
+    }
+
+    private void persistClear(Type type) {
+        if (journal == null) {
+            saveOrDefer();
+        } else {
+            byte[] record = ("CLR," + type).getBytes(StandardCharsets.US_ASCII);
+            appendToJournal(record, record.length);
+        }
+    }
+
+    private void saveOrDefer() {
+        if (batchRecords != null) {
+            batchDirty = true;
+        } else if (groupCommit != null) {
+            groupCommit.markDirty();
+        } else {
+            save();
+        }
+    }
+
+    private void appendToJournal(byte[] record, int length) {
+        if (batchRecords != null) {
+            batchRecords.add(Arrays.copyOf(record, length));
+            return;
+        }
+        if (!journalAttached) {
+            attachJournal();
+        }
+        journal.append(record, 0, length);
+    }
+
+    // Первая запись нового менеджера начинает журнал заново со снимка
+    private void attachJournal() {
+        save();
+        journal.reset();
+        journalAttached = true;
+    }
+
     @Override
     public void addNewTask(Task task) {
-        super.addNewTask(task);
-        save();
+        synchronized (stateLock) {
+            super.addNewTask(task);
+            persistPut(task);
+        }
+    }
+
+    // Массовое добавление идёт внутри пакета под stateLock, запись — одна на весь пакет
+    @Override
+    protected void onAdded(Task task) {
+        persistPut(task);
     }
 
     @Override
     public void addNewEpic(Epic epic) {
-        super.addNewEpic(epic);
-        save();
+        synchronized (stateLock) {
+            super.addNewEpic(epic);
+            persistPut(epic);
+        }
     }
 
     @Override
     public void addNewSubtask(Subtask subtask) {
-        super.addNewSubtask(subtask);
-        save();
+        synchronized (stateLock) {
+            super.addNewSubtask(subtask);
+            persistPut(subtask);
+        }
     }
 
     @Override
     public void updateTask(Task task) {
-        super.updateTask(task);
-        save();
+        synchronized (stateLock) {
+            super.updateTask(task);
+            persistPut(task);
+        }
     }
 
     @Override
     public void updateEpic(Epic epic) {
-        super.updateEpic(epic);
-        save();
+        synchronized (stateLock) {
+            super.updateEpic(epic);
+            persistPut(epic);
+        }
     }
 
     @Override
     public void updateSubtask(Subtask subtask) {
-        super.updateSubtask(subtask);
-        save();
+        synchronized (stateLock) {
+            super.updateSubtask(subtask);
+            persistPut(subtask);
+        }
     }
 
     @Override
     public void deleteTask(int id) {
-        super.deleteTask(id);
-        save();
+        synchronized (stateLock) {
+            super.deleteTask(id);
+            persistRemove(Type.TASK, id);
+        }
     }
 
     @Override
     public void deleteEpic(int id) {
-        super.deleteEpic(id);
-        save();
+        synchronized (stateLock) {
+            super.deleteEpic(id);
+            persistRemove(Type.EPIC, id);
+        }
     }
 
     @Override
     public void deleteSubtask(int id) {
-        super.deleteSubtask(id);
-        save();
+        synchronized (stateLock) {
+            super.deleteSubtask(id);
+            persistRemove(Type.SUBTASK, id);
+        }
     }
 
     @Override
     public void clearAllTasks() {
-        super.clearAllTasks();
-        save();
+        synchronized (stateLock) {
+            super.clearAllTasks();
+            persistClear(Type.TASK);
+        }
     }
 
     @Override
     public void clearAllEpics() {
-        super.clearAllEpics();
-        save();
+        synchronized (stateLock) {
+            super.clearAllEpics();
+            persistClear(Type.EPIC);
+        }
     }
 
     @Override
     public void clearAllSubtasks() {
-        super.clearAllSubtasks();
-        save();
+        synchronized (stateLock) {
+            super.clearAllSubtasks();
+            persistClear(Type.SUBTASK);
+        }
+    }
+
+    @Override
+    public TaskSnapshot snapshot() {
+        synchronized (stateLock) {
+            return super.snapshot();
+        }
     }
 
     // Сохранение текущего состояния в файл
     private void save() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(saveFile))) {
-            // Записываем заголовок
-            writer.write("id,type,name,status,description,epic,duration,startTime\n");
-
-            // Записываем задачи
-            for (Task task : getTasks()) {
-                writer.write(toString(task));
-                writer.newLine();
-            }
+        writeSnapshot(saveFile, prepareSnapshot());
+    }
 
-            // Записываем эпики
-            for (Epic epic : getEpics()) {
-                writer.write(toString(epic));
-                writer.newLine();
-            }
+    // Срез для снимка берётся под stateLock, а кодируется уже без блокировки
+    private SnapshotBody prepareSnapshot() {
+        SnapshotFormat format = snapshotFormat;
+        TaskSnapshot view = publishSnapshot();
+        if (format != SnapshotFormat.CSV) {
+            return out -> snapshotBody(format, listOf(view.getTasks()), listOf(view.getEpics()),
+                    listOf(view.getSubtasks())).writeTo(out);
+        }
+        return out -> {
+            out.write((CsvTaskCodec.HEADER + "\n").getBytes(StandardCharsets.US_ASCII));
+            rowCache.write(out, Type.TASK, view.getTasks());
+            rowCache.write(out, Type.EPIC, view.getEpics());
+            rowCache.write(out, Type.SUBTASK, view.getSubtasks());
+        };
+    }
 
-            // Записываем подзадачи
-            for (Subtask subtask : getSubtasks()) {
-                writer.write(toString(subtask));
-                writer.newLine();
-            }
+    private static <T> List<T> listOf(Iterable<T> items) {
+        List<T> list = new ArrayList<>();
+        items.forEach(list::add);
+        return list;
+    }
+
+    // Количество строк CSV, закодированных за время работы менеджера
+    long getEncodedRowCount() {
+        return rowCache.getEncodedRows();
+    }
 
+    private static SnapshotBody snapshotBody(SnapshotFormat format, List<Task> taskSnapshot,
+                                             List<Epic> epicSnapshot, List<Subtask> subtaskSnapshot) {
+        if (format == SnapshotFormat.BINARY) {
+            return out -> BinarySnapshotFormat.write(out, taskSnapshot, epicSnapshot, subtaskSnapshot);
+        }
+        return out -> writeCsv(out, taskSnapshot, epicSnapshot, subtaskSnapshot);
+    }
+
+    // Снимок пишется во временный файл и атомарно подменяет старый
+    private static void writeSnapshot(File file, SnapshotBody body) {
+        Path target = file.toPath();
+        Path temp = new File(file.getPath() + ".tmp").toPath();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            body.writeTo(out);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сохранения данных в файл", e);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e) {
             throw new ManagerSaveException("Ошибка сохранения данных в файл", e);
         }
     }
 
-    // Преобразование задачи в строку формата CSV
-    private String toString(Task task) {
-        StringBuilder builder = new StringBuilder();
-        builder.append(task.getId()).append(",");
-        builder.append(task.getType()).append(",");
-        builder.append(task.getName()).append(",");
-        builder.append(task.getStatus()).append(",");
-        builder.append(task.getDescription());
+    private static void writeCsv(OutputStream out, List<Task> taskSnapshot, List<Epic> epicSnapshot,
+                                 List<Subtask> subtaskSnapshot) throws IOException {
+        CsvTaskCodec codec = new CsvTaskCodec();
+        // Записываем заголовок
+        out.write((CsvTaskCodec.HEADER + "\n").getBytes(StandardCharsets.US_ASCII));
 
-        if (task.getType() == Type.SUBTASK) {
-            builder.append(",").append(((Subtask) task).getIdEpic());
+        // Записываем задачи
+        for (Task task : taskSnapshot) {
+            codec.encode(task);
+            codec.writeLine(out);
         }
 
-        // Добавляем продолжительность
-        builder.append(",").append(task.getDuration() != null ? task.getDuration().toMinutes() : "null");
+        // Записываем эпики
+        for (Epic epic : epicSnapshot) {
+            codec.encode(epic);
+            codec.writeLine(out);
+        }
 
-        // Добавляем время начала
-        builder.append(",").append(task.getStartTime() != null ? task.getStartTime().format(formatter) : "null");
+        // Записываем подзадачи
+        for (Subtask subtask : subtaskSnapshot) {
+            codec.encode(subtask);
+            codec.writeLine(out);
+        }
+    }
 
-        return builder.toString();
+    // Содержимое файла снимка
+    private interface SnapshotBody {
+        void writeTo(OutputStream out) throws IOException;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Отложенная групповая запись: мутации только отмечаются как несохранённые,
+// а отдельный поток выполняет одно сохранение на все изменения, накопленные за окно
+// (по времени с первой несохранённой мутации или по количеству мутаций).
+// flush() — барьер: возвращается, когда все мутации, сделанные до вызова, записаны
+public class GroupCommitWriter implements AutoCloseable {
+    private final Runnable commit;
+    private final long windowNanos;
+    private final int maxOps;
+    private final Thread thread;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private long dirtyVersion; // номер последней мутации
+    private long durableVersion; // номер последней мутации, попавшей в файл
+    private long firstDirtyNanos; // время первой несохранённой мутации
+    private boolean flushRequested;
+    private boolean closed;
+    private RuntimeException failure; // ошибка последней записи, сбрасывается после успешной
+
+    public GroupCommitWriter(Runnable commit, long windowMillis, int maxOps) {
+        if (windowMillis < 0 || maxOps <= 0) {
+            throw new IllegalArgumentException("Окно должно быть неотрицательным, а лимит операций положительным");
+        }
+        this.commit = commit;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxOps = maxOps;
+        this.thread = new Thread(this::run, "group-commit-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // Отметка очередной мутации
+    public void markDirty() {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Групповая запись остановлена");
+            }
+            if (dirtyVersion == durableVersion) {
+                firstDirtyNanos = System.nanoTime();
+            }
+            dirtyVersion++;
+            if (dirtyVersion - durableVersion == 1 || dirtyVersion - durableVersion >= maxOps) {
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ожидание записи всех мутаций, сделанных до вызова
+    public void flush() {
+        lock.lock();
+        try {
+            long target = dirtyVersion;
+            if (durableVersion >= target) {
+                return;
+            }
+            flushRequested = true;
+            changed.signalAll();
+            while (durableVersion < target) {
+                if (failure != null) {
+                    throw new ManagerSaveException("Ошибка отложенного сохранения", failure);
+                }
+                if (!thread.isAlive()) {
+                    throw new IllegalStateException("Поток групповой записи остановлен");
+                }
+                changed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Запись оставшихся изменений и остановка потока
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            if (durableVersion < dirtyVersion && failure != null) {
+                throw new ManagerSaveException("Ошибка отложенного сохранения", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long target;
+            lock.lock();
+            try {
+                while (!closed && dirtyVersion == durableVersion) {
+                    changed.awaitUninterruptibly();
+                }
+                if (dirtyVersion == durableVersion) {
+                    return; // остановка без несохранённых изменений
+                }
+                // Копим изменения, пока не закончится окно или не наберётся maxOps мутаций
+                while (!closed && !flushRequested && dirtyVersion - durableVersion < maxOps) {
+                    long remaining = windowNanos - (System.nanoTime() - firstDirtyNanos);
+                    if (remaining <= 0) break;
+                    try {
+                        changed.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                flushRequested = false;
+                target = dirtyVersion;
+            } finally {
+                lock.unlock();
+            }
+
+            // Снимок читает состояние не раньше этого места, значит включает все мутации до target
+            RuntimeException error = null;
+            try {
+                commit.run();
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error == null) {
+                    durableVersion = target;
+                    failure = null;
+                } else {
+                    failure = error;
+                    if (closed) {
+                        changed.signalAll();
+                        return; // при остановке ошибка будет выброшена из close()
+                    }
+                }
+                if (dirtyVersion > durableVersion) {
+                    firstDirtyNanos = System.nanoTime();
+                }
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -1,13 +1,12 @@
 import task.Task;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 
 public class InMemoryHistoryManager implements HistoryManager {
 
-    private final HashMap<Integer, Node> requestHistory = new HashMap<>();
+    private final IntObjectMap<Node> requestHistory = new IntObjectMap<>();
     private Node head;
     private Node tail;
 
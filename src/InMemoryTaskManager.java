@@ -1,31 +1,459 @@
 import task.Epic;
+import task.IntList;
 import task.Status;
 import task.Subtask;
 import task.Task;
+import task.Type;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class InMemoryTaskManager implements TaskManager {
+    private static final int MIN_CHANGE_LOG = 1024; // наименьший предел журнала изменений для срезов
 
-    protected final HashMap<Integer, Task> tasks;
-    protected final HashMap<Integer, Epic> epics;
-    protected final HashMap<Integer, Subtask> subTasks;
+    // Порядок списка, который отдаёт getPrioritizedTasks. Один экземпляр компаратора нужен, чтобы TreeSet.addAll
+    // узнавал уже отсортированный набор и строил дерево за линейное время
+    private static final Comparator<Task> PRIORITY_ORDER = Comparator.comparing(Task::getStartTime,
+            Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(Task::getId);
+
+    protected final IntObjectMap<Task> tasks;
+    protected final IntObjectMap<Epic> epics;
+    protected final IntObjectMap<Subtask> subTasks;
     protected final HistoryManager historyManager;
-    protected final TreeSet<Task> prioritizedTasks;
+    protected final TreeSet<Task> prioritizedTasks; // упорядочен по запомненному времени начала
+    // Время начала, с которым задача попала в приоритетный список. Задачу часто меняют на месте до вызова
+    // update, поэтому сравнение по текущему времени не нашло бы её в дереве и нарушило бы порядок
+    private final IntObjectMap<LocalDateTime> prioritizedStarts = new IntObjectMap<>();
+    private final TaskIntervalIndex intervalIndex; // пересечения и запросы по времени для задач и подзадач
     private int idCounter;
+    private IntUnaryOperator idAllocator; // внешний источник id: число id -> первый из диапазона
+    private BatchLog batchLog; // журнал отката текущего пакета, null вне пакета
+    // Статус и время, с которыми подзадача учтена в счётчиках и окне своего эпика. Нужны, потому что подзадачу
+    // часто меняют на месте и передают в updateSubtask тот же объект: прежние значения в нём уже потеряны
+    private final IntObjectMap<TrackedSubtask> trackedSubtasks = new IntObjectMap<>();
+    private final IntObjectMap<EpicTimeline> timelines = new IntObjectMap<>(); // окна эпиков по id эпика
+    // Вторичные индексы по статусу для каждого типа и для подзадач каждого эпика
+    private final StatusIndex taskStatuses = new StatusIndex();
+    private final StatusIndex epicStatuses = new StatusIndex();
+    private final StatusIndex subtaskStatuses = new StatusIndex();
+    private final IntObjectMap<StatusIndex> epicSubtaskStatuses = new IntObjectMap<>();
+    private final TextIndex textIndex = new TextIndex(); // полнотекстовый поиск по всем типам задач
+    private boolean statusVerification; // сверка счётчиков с полным пересчётом, для отладки
+    // Снимки для чтения. Каждый помнит версию своего источника и строится заново только после его изменения,
+    // поэтому частые чтения без изменений ничего не копируют
+    private Snapshot<Task> tasksSnapshot;
+    private Snapshot<Epic> epicsSnapshot;
+    private Snapshot<Subtask> subtasksSnapshot;
+    private final IntObjectMap<Snapshot<Subtask>> epicSubtasksSnapshots = new IntObjectMap<>();
+    private PrioritizedSnapshot prioritizedSnapshot;
+    // Последний опубликованный срез и id, изменённые после него (отмечаются теми же хуками, что и журнал пакета).
+    // Пока срезов не было, изменения не отслеживаются
+    private TaskSnapshot published;
+    private final IntList changedTasks = new IntList();
+    private final IntList changedEpics = new IntList();
+    private final IntList changedSubtasks = new IntList();
+    private boolean changesOverflowed; // журнал изменений переполнен, следующий срез строится заново
 
     public InMemoryTaskManager() {
-        tasks = new HashMap<>();
-        epics = new HashMap<>();
-        subTasks = new HashMap<>();
+        tasks = new IntObjectMap<>();
+        epics = new IntObjectMap<>();
+        subTasks = new IntObjectMap<>();
         this.historyManager = Managers.getDefaultHistory();
-        this.prioritizedTasks = new TreeSet<>(Comparator.comparing(Task::getStartTime, Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(Task::getId));
+        this.prioritizedTasks = new TreeSet<>(Comparator.comparing((Task task) -> prioritizedStarts.get(task.getId()))
+                .thenComparing(Task::getId));
+        this.intervalIndex = new TaskIntervalIndex();
         this.idCounter = 0;
     }
 
     private int idCount() {
-        return ++idCounter;
+        return allocateIds(1);
+    }
+
+    // Диапазон из count подряд идущих id, возвращается первый из них
+    private int allocateIds(int count) {
+        if (idAllocator != null) {
+            return idAllocator.applyAsInt(count);
+        }
+        int first = idCounter + 1;
+        idCounter += count;
+        return first;
+    }
+
+    // Выдача id внешним атомарным счётчиком (см. ConcurrentTaskManager). Откат пакета такие id не возвращает
+    void setIdAllocator(IntUnaryOperator idAllocator) {
+        this.idAllocator = idAllocator;
+    }
+
+    int getLastId() {
+        return idCounter;
+    }
+
+    // Восстановление служебных индексов после массовой загрузки в карты задач:
+    // счётчик id продолжает максимальный загруженный id, а приоритетный список строится
+    // одним проходом по заранее отсортированным задачам вместо N вставок в TreeSet,
+    // индекс интервалов — из того же списка. Счётчики статусов и окна эпиков пересчитываются по их подзадачам
+    // до сортировки, чтобы эпики попали в приоритетный список со своим временем начала
+    protected void rebuildIndexes() {
+        trackedSubtasks.clear();
+        timelines.clear();
+        epicSubtaskStatuses.clear();
+        taskStatuses.clear();
+        subtaskStatuses.clear();
+        reindexEpicStatuses();
+        for (Epic epic : epics.values()) {
+            epic.clearSubtaskCounts();
+            for (PrimitiveIterator.OfInt ids = epic.getSubtaskIds().iterator(); ids.hasNext(); ) {
+                Subtask subtask = subTasks.get(ids.nextInt());
+                if (subtask != null) {
+                    trackSubtask(epic, subtask);
+                }
+            }
+            applyTimeWindow(epic);
+        }
+
+        int maxId = 0;
+        ArrayList<Task> timed = new ArrayList<>();
+        ArrayList<Task> intervals = new ArrayList<>();
+        for (Task task : tasks.values()) {
+            maxId = Math.max(maxId, task.getId());
+            taskStatuses.put(task.getId(), task.getStatus());
+            if (task.getStartTime() != null) timed.add(task);
+        }
+        for (Epic epic : epics.values()) {
+            maxId = Math.max(maxId, epic.getId());
+            if (epic.getStartTime() != null) timed.add(epic);
+        }
+        for (Subtask subtask : subTasks.values()) {
+            maxId = Math.max(maxId, subtask.getId());
+            subtaskStatuses.put(subtask.getId(), subtask.getStatus());
+            if (subtask.getStartTime() != null) timed.add(subtask);
+        }
+        idCounter = Math.max(idCounter, maxId);
+
+        timed.sort(PRIORITY_ORDER);
+        // Совпадающие по компаратору задачи (одинаковый id в повреждённом файле) TreeSet не хранит
+        ArrayList<Task> unique = new ArrayList<>(timed.size());
+        for (Task task : timed) {
+            if (unique.isEmpty() || PRIORITY_ORDER.compare(unique.get(unique.size() - 1), task) != 0) {
+                unique.add(task);
+            }
+        }
+        prioritizedTasks.clear();
+        prioritizedStarts.clear();
+        for (Task task : unique) {
+            prioritizedStarts.put(task.getId(), task.getStartTime());
+        }
+        prioritizedTasks.addAll(new SortedListView(unique, prioritizedTasks.comparator()));
+
+        ArrayList<Task> all = new ArrayList<>(tasks.size() + epics.size() + subTasks.size());
+        all.addAll(tasks.values());
+        all.addAll(epics.values());
+        all.addAll(subTasks.values());
+        textIndex.build(all);
+        // Эпики в индекс интервалов не входят: их время складывается из подзадач
+        for (Task task : unique) {
+            if (!(task instanceof Epic)) intervals.add(task);
+        }
+        intervalIndex.build(intervals);
+    }
+
+    // Сверка каждого пересчёта статуса эпика с полным проходом по подзадачам.
+    // При расхождении выбрасывается IllegalStateException
+    public void setStatusVerification(boolean statusVerification) {
+        this.statusVerification = statusVerification;
+    }
+
+    // Учёт подзадачи в счётчиках статусов и окне эпика, O(log k) для k подзадач эпика
+    private void trackSubtask(Epic epic, Subtask subtask) {
+        TrackedSubtask tracked = new TrackedSubtask(subtask);
+        epic.countSubtask(tracked.status);
+        trackedSubtasks.put(subtask.getId(), tracked);
+        EpicTimeline timeline = timelines.get(epic.getId());
+        if (timeline == null) {
+            timeline = new EpicTimeline();
+            timelines.put(epic.getId(), timeline);
+        }
+        timeline.add(tracked);
+        StatusIndex statuses = epicSubtaskStatuses.get(epic.getId());
+        if (statuses == null) {
+            statuses = new StatusIndex();
+            epicSubtaskStatuses.put(epic.getId(), statuses);
+        }
+        statuses.put(subtask.getId(), tracked.status);
+    }
+
+    private void untrackSubtask(Epic epic, int idSubtask) {
+        TrackedSubtask tracked = trackedSubtasks.remove(idSubtask);
+        if (tracked != null && epic != null) {
+            epic.uncountSubtask(tracked.status);
+            EpicTimeline timeline = timelines.get(epic.getId());
+            if (timeline != null) {
+                timeline.remove(tracked);
+            }
+            StatusIndex statuses = epicSubtaskStatuses.get(epic.getId());
+            if (statuses != null) {
+                statuses.remove(idSubtask);
+            }
+        }
+    }
+
+    private void applyTimeWindow(Epic epic) {
+        EpicTimeline timeline = timelines.get(epic.getId());
+        if (timeline == null || epic.getSubtaskIds().isEmpty()) {
+            epic.setTimeWindow(null, null, null);
+        } else {
+            epic.setTimeWindow(timeline.start(), timeline.end(), timeline.duration());
+        }
+    }
+
+    // Задача или подзадача добавлена в карту
+    private void addToIndexes(Task task) {
+        addPrioritized(task);
+        intervalIndex.add(task);
+        (task instanceof Subtask ? subtaskStatuses : taskStatuses).put(task.getId(), task.getStatus());
+        textIndex.add(task);
+    }
+
+    // Задача или подзадача удаляется из карты
+    private void removeFromIndexes(Task task) {
+        removePrioritized(task);
+        intervalIndex.remove(task.getId());
+        (task instanceof Subtask ? subtaskStatuses : taskStatuses).remove(task.getId());
+        textIndex.remove(task.getId());
+    }
+
+    private void addPrioritized(Task task) {
+        if (task.getStartTime() != null) {
+            prioritizedStarts.put(task.getId(), task.getStartTime());
+            prioritizedTasks.add(task);
+        }
+    }
+
+    private void removePrioritized(Task task) {
+        if (prioritizedStarts.containsKey(task.getId())) {
+            prioritizedTasks.remove(task);
+            prioritizedStarts.remove(task.getId());
+        }
+    }
+
+    // Пакет изменений. Вложенный пакет становится частью внешнего.
+    // До первого изменения каждой записи внутри пакета запоминается её прежнее значение,
+    // поэтому откат стоит пропорционально числу затронутых задач, а не размеру менеджера (см. rollbackBatch).
+    // Запоминается ссылка на объект, а не копия: изменения, сделанные вызывающим кодом на месте
+    // в объекте задачи, откат не отменяет. Созданные в пакете задачи после отката снова получают id 0.
+    // Пересчёт эпиков откладывается до конца пакета: внутри пакета статус эпика может быть устаревшим
+    @Override
+    public void batch(Consumer<TaskManager> operations) {
+        if (batchLog != null) {
+            operations.accept(this);
+            return;
+        }
+        batchLog = new BatchLog(idCounter);
+        try {
+            operations.accept(this);
+            for (int idEpic : batchLog.pendingEpics) {
+                if (epics.containsKey(idEpic)) {
+                    updateEpicStatus(idEpic);
+                    updateEpicTime(idEpic);
+                }
+            }
+            onBatchCommit();
+        } catch (RuntimeException | Error e) {
+            rollbackBatch();
+            onBatchRollback();
+            throw e;
+        } finally {
+            batchLog = null;
+        }
+    }
+
+    protected boolean isInBatch() {
+        return batchLog != null;
+    }
+
+    // Вызывается после применения пакета, до выхода из batch()
+    protected void onBatchCommit() {
+    }
+
+    // Вызывается после отката пакета
+    protected void onBatchRollback() {
+    }
+
+    // Откат по журналу пакета: прежние значения возвращаются в карты, а в индексах заменяются записи
+    // только затронутых задач; счётчики и окна пересчитываются только у затронутых эпиков.
+    // Стоимость — O(m log n) для m затронутых записей плюс подзадачи затронутых эпиков
+    private void rollbackBatch() {
+        BatchLog log = batchLog;
+        LinkedHashSet<Integer> affectedEpics = new LinkedHashSet<>();
+        log.tasks.forEach((id, previous) -> {
+            logChange(changedTasks, id); // срез мог быть опубликован при фиксации пакета
+            Task current = tasks.get(id);
+            if (current != null) {
+                removeFromIndexes(current);
+            }
+            restore(tasks, id, previous);
+            if (previous != null) {
+                addToIndexes(previous);
+            }
+        });
+        log.subtasks.forEach((id, previous) -> {
+            logChange(changedSubtasks, id);
+            Subtask current = subTasks.get(id);
+            if (current != null) {
+                removeFromIndexes(current);
+                affectedEpics.add(current.getIdEpic());
+            }
+            trackedSubtasks.remove(id);
+            restore(subTasks, id, previous);
+            if (previous != null) {
+                addToIndexes(previous);
+                affectedEpics.add(previous.getIdEpic());
+            }
+        });
+        log.epics.forEach((id, state) -> {
+            logChange(changedEpics, id);
+            Epic current = epics.get(id);
+            if (current != null) {
+                removePrioritized(current);
+                epicStatuses.remove(id);
+                textIndex.remove(id);
+            }
+            if (state == null) {
+                epics.remove(id);
+                timelines.remove(id);
+                epicSubtaskStatuses.remove(id);
+                return;
+            }
+            state.epic.setStatus(state.status);
+            state.epic.setSubtaskIds(state.subtaskIds);
+            epics.put(id, state.epic);
+            epicStatuses.put(id, state.status);
+            textIndex.add(state.epic);
+            affectedEpics.add(id);
+        });
+        for (int idEpic : affectedEpics) {
+            retrackEpic(idEpic);
+        }
+        // Созданные в пакете объекты снова без id
+        for (Task task : log.created) {
+            task.setId(0);
+        }
+        if (log.history != null) {
+            for (Task task : historyManager.getHistory()) {
+                historyManager.remove(task.getId());
+            }
+            // История отдаётся от последнего просмотра к первому
+            for (int i = log.history.size() - 1; i >= 0; i--) {
+                historyManager.add(log.history.get(i));
+            }
+        }
+        if (idAllocator == null) {
+            idCounter = log.idCounter;
+        }
+    }
+
+    // Счётчики, статус и окно эпика заново по его подзадачам, O(k log k)
+    private void retrackEpic(int idEpic) {
+        Epic epic = epics.get(idEpic);
+        timelines.remove(idEpic);
+        epicSubtaskStatuses.remove(idEpic);
+        if (epic == null) {
+            return;
+        }
+        epic.clearSubtaskCounts();
+        for (PrimitiveIterator.OfInt ids = epic.getSubtaskIds().iterator(); ids.hasNext(); ) {
+            Subtask subtask = subTasks.get(ids.nextInt());
+            if (subtask != null) {
+                trackSubtask(epic, subtask);
+            }
+        }
+        // Подзадачу могли изменить на месте, поэтому сохранённый статус эпика выводится заново
+        updateEpicStatus(idEpic);
+        updateEpicTime(idEpic);
+    }
+
+    private static <T extends Task> void restore(IntObjectMap<T> map, int id, T previous) {
+        if (previous == null) {
+            map.remove(id);
+        } else {
+            map.put(id, previous);
+        }
+    }
+
+    // Запоминание прежнего значения перед изменением записи внутри пакета
+    // и отметка записи для следующего среза
+    private void touchTask(int id) {
+        if (batchLog != null && !batchLog.tasks.containsKey(id)) {
+            batchLog.tasks.put(id, tasks.get(id));
+        }
+        logChange(changedTasks, id);
+    }
+
+    private void touchSubtask(int id) {
+        if (batchLog != null && !batchLog.subtasks.containsKey(id)) {
+            batchLog.subtasks.put(id, subTasks.get(id));
+        }
+        logChange(changedSubtasks, id);
+    }
+
+    private void touchEpic(int id) {
+        if (batchLog != null && !batchLog.epics.containsKey(id)) {
+            Epic epic = epics.get(id);
+            batchLog.epics.put(id, epic != null ? new EpicState(epic) : null);
+        }
+        logChange(changedEpics, id);
+    }
+
+    // Отметка записи для следующего среза. Журнал ограничен: когда в нём больше записей, чем в менеджере
+    // (но не меньше MIN_CHANGE_LOG), перенос по журналу уже дороже полной сборки, поэтому журнал
+    // очищается и больше не ведётся до следующего среза, а тот строится заново за O(n).
+    // Так журнал не растёт без конца, даже если после одного среза менеджер только изменяют
+    private void logChange(IntList changed, int id) {
+        if (published == null || changesOverflowed) {
+            return;
+        }
+        changed.add(id);
+        if (getChangeLogSize() > Math.max(MIN_CHANGE_LOG, tasks.size() + epics.size() + subTasks.size())) {
+            changesOverflowed = true;
+            changedTasks.clear();
+            changedEpics.clear();
+            changedSubtasks.clear();
+        }
+    }
+
+    // Число записей в журнале изменений для срезов
+    int getChangeLogSize() {
+        return changedTasks.size() + changedEpics.size() + changedSubtasks.size();
+    }
+
+    // Новая задача получила id внутри пакета
+    private void touchCreated(Task task) {
+        if (batchLog != null) {
+            batchLog.created.add(task);
+        }
+    }
+
+    private void touchHistory() {
+        if (batchLog != null && batchLog.history == null) {
+            batchLog.history = historyManager.getHistory();
+        }
+    }
+
+    // Пересчёт статуса и времени эпика, внутри пакета — один раз в конце
+    private void rollupEpic(int idEpic) {
+        if (batchLog != null) {
+            batchLog.pendingEpics.add(idEpic);
+        } else {
+            updateEpicStatus(idEpic);
+            updateEpicTime(idEpic);
+        }
     }
 
     //Создание задачи
@@ -35,17 +463,21 @@ public class InMemoryTaskManager implements TaskManager {
             throw new IllegalArgumentException("Задача пересекается по времени с существующими задачами");
         }
         task.setId(idCount());
+        touchCreated(task);
+        touchTask(task.getId());
         tasks.put(task.getId(), task);
-        if (task.getStartTime() != null) {
-            prioritizedTasks.add(task);
-        }
+        addToIndexes(task);
     }
 
     //Создание эпиков
     @Override
     public void addNewEpic(Epic epic) {
         epic.setId(idCount());
+        touchCreated(epic);
+        touchEpic(epic.getId());
         epics.put(epic.getId(), epic);
+        epicStatuses.put(epic.getId(), epic.getStatus());
+        textIndex.add(epic);
     }
 
     //Создание подзадач
@@ -55,56 +487,224 @@ public class InMemoryTaskManager implements TaskManager {
             throw new IllegalArgumentException("Подзадача пересекается по времени с существующими задачами");
         }
         subtask.setId(idCount());
+        touchCreated(subtask);
+        touchSubtask(subtask.getId());
         subTasks.put(subtask.getId(), subtask);
-        if (subtask.getStartTime() != null) {
-            prioritizedTasks.add(subtask);
-        }
+        addToIndexes(subtask);
         Epic epic = epics.get(subtask.getIdEpic());
         if (epic != null) {
+            touchEpic(epic.getId());
             epic.addIdSubtask(subtask.getId());
-            updateEpicStatus(subtask.getIdEpic());
-            updateEpicTime(subtask.getIdEpic());
+            trackSubtask(epic, subtask);
+            rollupEpic(subtask.getIdEpic());
+        }
+    }
+
+    // Массовое добавление: проверка пересечений одним проходом по отсортированному пакету (см. findConflicts),
+    // затем вставка одним пакетом с одним диапазоном id. Пересекающиеся задачи не добавляются и возвращаются
+    @Override
+    public List<Task> addAllTasks(List<Task> newTasks) {
+        List<Task> rejected = new ArrayList<>();
+        batch(manager -> {
+            boolean[] conflicts = findConflicts(newTasks);
+            int id = allocateIds(newTasks.size() - count(conflicts));
+            for (int i = 0; i < newTasks.size(); i++) {
+                Task task = newTasks.get(i);
+                if (conflicts[i]) {
+                    rejected.add(task);
+                    continue;
+                }
+                task.setId(id++);
+                touchCreated(task);
+                touchTask(task.getId());
+                tasks.put(task.getId(), task);
+                addToIndexes(task);
+                onAdded(task);
+            }
+        });
+        return rejected;
+    }
+
+    // Как addAllTasks; статус и время каждого затронутого эпика пересчитываются один раз в конце пакета
+    @Override
+    public List<Subtask> addAllSubtasks(List<Subtask> newSubtasks) {
+        List<Subtask> rejected = new ArrayList<>();
+        batch(manager -> {
+            boolean[] conflicts = findConflicts(newSubtasks);
+            int id = allocateIds(newSubtasks.size() - count(conflicts));
+            for (int i = 0; i < newSubtasks.size(); i++) {
+                Subtask subtask = newSubtasks.get(i);
+                if (conflicts[i]) {
+                    rejected.add(subtask);
+                    continue;
+                }
+                subtask.setId(id++);
+                touchCreated(subtask);
+                touchSubtask(subtask.getId());
+                subTasks.put(subtask.getId(), subtask);
+                addToIndexes(subtask);
+                Epic epic = epics.get(subtask.getIdEpic());
+                if (epic != null) {
+                    touchEpic(epic.getId());
+                    epic.addIdSubtask(subtask.getId());
+                    trackSubtask(epic, subtask);
+                    rollupEpic(epic.getId());
+                }
+                onAdded(subtask);
+            }
+        });
+        return rejected;
+    }
+
+    // Вызывается для каждой задачи, добавленной массово, внутри пакета
+    protected void onAdded(Task task) {
+    }
+
+    // Пересечения элементов пакета по правилу isTasksIntersect за O(m log m + k): m элементов со временем
+    // сортируются по началу (при равном — в порядке пакета) и проходятся один раз вместе с k занятыми
+    // интервалами индекса в окне пакета. Элемент отклоняется, если пересекается с задачей индекса
+    // или с уже принятым элементом пакета, поэтому из двух пересекающихся остаётся более ранний
+    private boolean[] findConflicts(List<? extends Task> items) {
+        boolean[] conflicts = new boolean[items.size()];
+        List<Integer> timed = new ArrayList<>();
+        LocalDateTime last = null;
+        for (int i = 0; i < items.size(); i++) {
+            Task item = items.get(i);
+            if (item == null) {
+                throw new IllegalArgumentException("Задача не может быть null");
+            }
+            if (item.getStartTime() != null && item.getDuration() != null) {
+                timed.add(i);
+                last = later(last, item.getEndTime());
+            }
+        }
+        if (timed.isEmpty()) {
+            return conflicts;
+        }
+        timed.sort(Comparator.comparing((Integer i) -> items.get(i).getStartTime()));
+
+        LocalDateTime first = items.get(timed.get(0)).getStartTime();
+        List<Task> busy = new ArrayList<>();
+        for (Task task : intervalIndex.range(first, last.isAfter(first) ? last : first)) {
+            if (task.getDuration() != null) {
+                busy.add(task); // задача без продолжительности время не занимает
+            }
+        }
+
+        int next = 0;
+        LocalDateTime busyEnd = null; // наибольший конец задач индекса, начавшихся раньше текущего элемента
+        LocalDateTime acceptedEnd = null; // то же для принятых элементов пакета
+        LocalDateTime groupStart = null; // начало текущей группы элементов с одинаковым началом
+        LocalDateTime groupEnd = null; // наибольший конец принятых элементов этой группы
+        for (int i : timed) {
+            Task item = items.get(i);
+            LocalDateTime start = item.getStartTime();
+            if (!start.equals(groupStart)) {
+                acceptedEnd = later(acceptedEnd, groupEnd);
+                groupStart = start;
+                groupEnd = null;
+            }
+            while (next < busy.size() && busy.get(next).getStartTime().isBefore(start)) {
+                busyEnd = later(busyEnd, busy.get(next).getEndTime());
+                next++;
+            }
+            // Задачи с тем же началом не пересекаются, проверяется первая начавшаяся позже
+            int after = next;
+            while (after < busy.size() && busy.get(after).getStartTime().equals(start)) {
+                after++;
+            }
+            boolean conflict = busyEnd != null && busyEnd.isAfter(start)
+                    || acceptedEnd != null && acceptedEnd.isAfter(start)
+                    || after < busy.size() && busy.get(after).getStartTime().isBefore(item.getEndTime());
+            if (conflict) {
+                conflicts[i] = true;
+            } else {
+                groupEnd = later(groupEnd, item.getEndTime());
+            }
+        }
+        return conflicts;
+    }
+
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        return a == null || b != null && b.isAfter(a) ? b : a;
+    }
+
+    private static int count(boolean[] flags) {
+        int count = 0;
+        for (boolean flag : flags) {
+            if (flag) count++;
         }
+        return count;
     }
 
-    //Обновление статуса Epic после добавления/удаления подзадач
+    //Обновление статуса Epic после добавления/удаления подзадач.
+    //Статус выводится из счётчиков подзадач по статусам за O(1)
     protected void updateEpicStatus(int idEpic) {
         Epic epic = epics.get(idEpic);
-        ArrayList<Integer> iDSubtaskArray = epic.getIdSubtaskArray();
-        ArrayList<Subtask> subtasksArray = new ArrayList<>();
-        for (int id : iDSubtaskArray) {
-            subtasksArray.add(subTasks.get(id));
+        setDerivedStatus(epic);
+        epicStatuses.put(idEpic, epic.getStatus());
+    }
+
+    // Статус эпика по счётчикам без обновления индексов: можно вызывать параллельно для разных эпиков,
+    // после чего индекс статусов эпиков восстанавливается через reindexEpicStatuses
+    protected void setDerivedStatus(Epic epic) {
+        Status status = deriveEpicStatus(epic);
+        if (statusVerification) {
+            Status expected = recomputeEpicStatus(epic);
+            if (status != expected) {
+                throw new IllegalStateException("Счётчики эпика " + epic.getId() + " дают " + status
+                        + ", полный пересчёт — " + expected);
+            }
+        }
+        epic.setStatus(status);
+    }
+
+    protected void reindexEpicStatuses() {
+        epicStatuses.clear();
+        for (Epic epic : epics.values()) {
+            epicStatuses.put(epic.getId(), epic.getStatus());
         }
+    }
+
+    private static Status deriveEpicStatus(Epic epic) {
+        //если у эпика нет подзадач, то статус должен быть NEW
+        if (epic.getSubtaskIds().isEmpty()) return Status.NEW;
+        boolean isSubTaskNew = epic.getSubtaskCount(Status.NEW) > 0;
+        boolean isSubTaskDone = epic.getSubtaskCount(Status.DONE) > 0;
+        if (isSubTaskDone && !isSubTaskNew) return Status.DONE;
+        if (isSubTaskNew && !isSubTaskDone) return Status.NEW;
+        return Status.IN_PROGRESS;
+    }
+
+    // Полный пересчёт по подзадачам для режима сверки
+    private Status recomputeEpicStatus(Epic epic) {
+        IntList idSubtasks = epic.getSubtaskIds();
         boolean isSubTaskNew = false;
         boolean isSubTaskDone = false;
-        if (iDSubtaskArray.isEmpty()) { //если у эпика нет подзадач, то статус должен быть NEW
-            epics.get(idEpic).setStatus(Status.NEW);
-        } else {
-            for (Subtask subtask : subtasksArray) {
-                if (subtask.getStatus().equals(Status.DONE)) isSubTaskDone = true;
-                if (subtask.getStatus().equals(Status.NEW)) isSubTaskNew = true;
-            }
-            if (isSubTaskDone && !isSubTaskNew) epics.get(idEpic).setStatus(Status.DONE);
-            else if (isSubTaskNew && !isSubTaskDone) epics.get(idEpic).setStatus(Status.NEW);
-            else epics.get(idEpic).setStatus(Status.IN_PROGRESS);
-
+        if (idSubtasks.isEmpty()) return Status.NEW;
+        for (PrimitiveIterator.OfInt ids = idSubtasks.iterator(); ids.hasNext(); ) {
+            Subtask subtask = subTasks.get(ids.nextInt());
+            if (subtask.getStatus().equals(Status.DONE)) isSubTaskDone = true;
+            if (subtask.getStatus().equals(Status.NEW)) isSubTaskNew = true;
         }
+        if (isSubTaskDone && !isSubTaskNew) return Status.DONE;
+        if (isSubTaskNew && !isSubTaskDone) return Status.NEW;
+        return Status.IN_PROGRESS;
     }
 
     //Обновление задачи
     @Override
     public void updateTask(Task task) {
         if (task != null && tasks.containsKey(task.getId()) && !isTaskIntersectWithAny(task)) {
+            touchTask(task.getId());
             Task oldTask = tasks.get(task.getId());
-            // Удаляем старую версию из приоритетного списка
-            prioritizedTasks.remove(oldTask);
+            // Удаляем старую версию из индексов
+            removeFromIndexes(oldTask);
 
             tasks.put(task.getId(), task);
 
-            // Добавляем новую версию в приоритетный список, если есть время начала
-            if (task.getStartTime() != null) {
-                prioritizedTasks.add(task);
-            }
+            // Добавляем новую версию в индексы
+            addToIndexes(task);
         }
     }
 
@@ -112,7 +712,24 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void updateEpic(Epic epic) {
         if (epic != null && epics.containsKey(epic.getId())) {
+            touchEpic(epic.getId());
+            Epic oldEpic = epics.get(epic.getId());
+            if (oldEpic != epic) {
+                // Подзадачи, счётчики и окно эпика ведёт менеджер: новый объект получает их от прежнего
+                removePrioritized(oldEpic);
+                epic.setSubtaskIds(oldEpic.getSubtaskIds());
+                epic.clearSubtaskCounts();
+                for (Status status : Status.values()) {
+                    for (int i = oldEpic.getSubtaskCount(status); i > 0; i--) {
+                        epic.countSubtask(status);
+                    }
+                }
+                epic.setTimeWindow(oldEpic.getStartTime(), oldEpic.getEndTime(), oldEpic.getDuration());
+                addPrioritized(epic);
+            }
             epics.put(epic.getId(), epic);
+            updateEpicStatus(epic.getId()); // статус эпика задают его подзадачи, а не вызывающий
+            textIndex.add(epic);
         }
     }
 
@@ -120,27 +737,52 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void updateSubtask(Subtask subtask) {
         if (subtask != null && subTasks.containsKey(subtask.getId()) && !isTaskIntersectWithAny(subtask)) {
+            touchSubtask(subtask.getId());
+            touchEpic(subtask.getIdEpic());
             Subtask oldSubtask = subTasks.get(subtask.getId());
-            // Удаляем старую версию из приоритетного списка
-            prioritizedTasks.remove(oldSubtask);
+            // Удаляем старую версию из индексов
+            removeFromIndexes(oldSubtask);
 
             subTasks.put(subtask.getId(), subtask);
 
-            // Добавляем новую версию в приоритетный список, если есть время начала
-            if (subtask.getStartTime() != null) {
-                prioritizedTasks.add(subtask);
-            }
+            // Добавляем новую версию в индексы
+            addToIndexes(subtask);
 
-            updateEpicStatus(subtask.getIdEpic());
-            updateEpicTime(subtask.getIdEpic());
+            // Переносим подзадачу в счётчиках и окне эпика со старых статуса и времени на новые
+            Epic epic = epics.get(subtask.getIdEpic());
+            if (epic != null && epic.getSubtaskIds().contains(subtask.getId())) {
+                untrackSubtask(epic, subtask.getId());
+                trackSubtask(epic, subtask);
+            }
+            rollupEpic(subtask.getIdEpic());
         }
     }
 
+    // Поиск по id без записи в историю и запись просмотра отдельно: ConcurrentTaskManager ищет
+    // под разделяемой блокировкой, а просмотры записывает в историю позже, пачкой
+    Task findTask(int id) {
+        return tasks.get(id);
+    }
+
+    Epic findEpic(int id) {
+        return epics.get(id);
+    }
+
+    Subtask findSubtask(int id) {
+        return subTasks.get(id);
+    }
+
+    void recordView(Task task) {
+        touchHistory();
+        historyManager.add(task);
+    }
+
     //Получение задачи по id
     @Override
     public Task getTaskById(int id) {
         Task task = tasks.get(id);
         if (task != null) {
+            touchHistory();
             historyManager.add(task);
         }
         return task;
@@ -151,6 +793,7 @@ public class InMemoryTaskManager implements TaskManager {
     public Epic getEpicById(int id) {
         Epic epic = epics.get(id);
         if (epic != null) {
+            touchHistory();
             historyManager.add(epic);
         }
         return epic;
@@ -161,6 +804,7 @@ public class InMemoryTaskManager implements TaskManager {
     public Subtask getSubtaskById(int id) {
         Subtask subtask = subTasks.get(id);
         if (subtask != null) {
+            touchHistory();
             historyManager.add(subtask);
         }
         return subtask;
@@ -168,43 +812,85 @@ public class InMemoryTaskManager implements TaskManager {
 
     //Печать задач
     @Override
-    public ArrayList<Task> getTasks() {
-        return new ArrayList<>(tasks.values());
+    public List<Task> getTasks() {
+        if (tasksSnapshot == null || tasksSnapshot.version != tasks.version()) {
+            tasksSnapshot = new Snapshot<>(tasks.version(), new ArrayList<>(tasks.values()));
+        }
+        return tasksSnapshot.items;
     }
 
     //Печать эпиков
     @Override
-    public ArrayList<Epic> getEpics() {
-        return new ArrayList<>(epics.values());
+    public List<Epic> getEpics() {
+        if (epicsSnapshot == null || epicsSnapshot.version != epics.version()) {
+            epicsSnapshot = new Snapshot<>(epics.version(), new ArrayList<>(epics.values()));
+        }
+        return epicsSnapshot.items;
     }
 
     //Печать подзадач
     @Override
-    public ArrayList<Subtask> getSubtasks() {
-        return new ArrayList<>(subTasks.values());
+    public List<Subtask> getSubtasks() {
+        if (subtasksSnapshot == null || subtasksSnapshot.version != subTasks.version()) {
+            subtasksSnapshot = new Snapshot<>(subTasks.version(), new ArrayList<>(subTasks.values()));
+        }
+        return subtasksSnapshot.items;
+    }
+
+    @Override
+    public List<Task> getTasks(int offset, int limit) {
+        return page(getTasks(), offset, limit);
+    }
+
+    @Override
+    public List<Epic> getEpics(int offset, int limit) {
+        return page(getEpics(), offset, limit);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(int offset, int limit) {
+        return page(getSubtasks(), offset, limit);
     }
 
-    //Получение списка всех подзадач определённого эпика по id
+    //Получение списка всех подзадач определённого эпика по id.
+    //Состав эпика меняется только вместе с картой подзадач или эпиков, поэтому снимок сверяется с их версиями
     @Override
-    public ArrayList<Subtask> printArrayIdSubtask(int idEpic) {
+    public List<Subtask> printArrayIdSubtask(int idEpic) {
         Epic epic = epics.get(idEpic);
         if (epic == null) {
-            return new ArrayList<>();
+            return List.of();
         }
-        ArrayList<Integer> idSubtaskArray = epic.getIdSubtaskArray();
-        ArrayList<Subtask> subtaskArray = new ArrayList<>();
-        for (int id : idSubtaskArray) {
-            subtaskArray.add(subTasks.get(id));
+        long version = subTasks.version() + epics.version();
+        Snapshot<Subtask> snapshot = epicSubtasksSnapshots.get(idEpic);
+        if (snapshot == null || snapshot.version != version) {
+            if (epicSubtasksSnapshots.size() > epics.size()) {
+                epicSubtasksSnapshots.clear(); // снимки удалённых эпиков
+            }
+            ArrayList<Subtask> subtaskArray = new ArrayList<>(epic.getSubtaskIds().size());
+            epic.getSubtaskIds().forEach(id -> subtaskArray.add(subTasks.get(id)));
+            snapshot = new Snapshot<>(version, subtaskArray);
+            epicSubtasksSnapshots.put(idEpic, snapshot);
+        }
+        return snapshot.items;
+    }
+
+    static <T> List<T> page(List<T> items, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Смещение и размер страницы не могут быть отрицательными");
         }
-        return subtaskArray;
+        int from = Math.min(offset, items.size());
+        int to = (int) Math.min((long) from + limit, items.size());
+        return items.subList(from, to);
     }
 
     //Удаление задач по ID
     @Override
     public void deleteTask(int id) {
+        touchTask(id);
+        touchHistory();
         Task task = tasks.get(id);
         if (task != null) {
-            prioritizedTasks.remove(task);
+            removeFromIndexes(task);
         }
         historyManager.remove(id);
         tasks.remove(id);
@@ -213,20 +899,28 @@ public class InMemoryTaskManager implements TaskManager {
     //Удаление эпиков по ID
     @Override
     public void deleteEpic(int id) {
+        touchEpic(id);
+        touchHistory();
         Epic epic = epics.get(id);
         if (epic != null) {
             // Удаляем эпик из приоритетного списка
-            prioritizedTasks.remove(epic);
+            removeFromIndexes(epic);
 
             // Удаляем все подзадачи эпика из приоритетного списка
-            for (Integer idSubtask : epic.getIdSubtaskArray()) {
+            for (PrimitiveIterator.OfInt ids = epic.getSubtaskIds().iterator(); ids.hasNext(); ) {
+                int idSubtask = ids.nextInt();
+                touchSubtask(idSubtask);
                 Subtask subtask = subTasks.get(idSubtask);
                 if (subtask != null) {
-                    prioritizedTasks.remove(subtask);
+                    removeFromIndexes(subtask);
                 }
                 historyManager.remove(idSubtask);
                 subTasks.remove(idSubtask);
+                trackedSubtasks.remove(idSubtask);
             }
+            timelines.remove(id);
+            epicSubtaskStatuses.remove(id);
+            epicStatuses.remove(id);
         }
         historyManager.remove(id);
         epics.remove(id);
@@ -235,12 +929,16 @@ public class InMemoryTaskManager implements TaskManager {
     //Удаление подзадач по ID
     @Override
     public void deleteSubtask(int id) {
+        touchSubtask(id);
+        touchHistory();
         Subtask subtask = subTasks.get(id);
         if (subtask != null) {
-            prioritizedTasks.remove(subtask);
+            removeFromIndexes(subtask);
             int idEpic = subtask.getIdEpic();
+            touchEpic(idEpic);
             epics.get(idEpic).deleteEpicSubtask(id);
-            updateEpicStatus(idEpic);
+            untrackSubtask(epics.get(idEpic), id);
+            rollupEpic(idEpic);
         }
         historyManager.remove(id);
         subTasks.remove(id);
@@ -249,8 +947,10 @@ public class InMemoryTaskManager implements TaskManager {
     //Очистка всех задач
     @Override
     public void clearAllTasks() {
+        touchHistory();
         for (Task task : tasks.values()) {
-            prioritizedTasks.remove(task);
+            touchTask(task.getId());
+            removeFromIndexes(task);
             historyManager.remove(task.getId());
         }
         tasks.clear();
@@ -259,12 +959,16 @@ public class InMemoryTaskManager implements TaskManager {
     //Очистка всех эпиков и подзадач с ними
     @Override
     public void clearAllEpics() {
+        touchHistory();
         for (Epic epic : epics.values()) {
-            prioritizedTasks.remove(epic);
-            for (Integer idSubtask : epic.getIdSubtaskArray()) {
+            touchEpic(epic.getId());
+            removeFromIndexes(epic);
+            for (PrimitiveIterator.OfInt ids = epic.getSubtaskIds().iterator(); ids.hasNext(); ) {
+                int idSubtask = ids.nextInt();
+                touchSubtask(idSubtask);
                 Subtask subtask = subTasks.get(idSubtask);
                 if (subtask != null) {
-                    prioritizedTasks.remove(subtask);
+                    removeFromIndexes(subtask);
                 }
                 historyManager.remove(idSubtask);
             }
@@ -272,19 +976,32 @@ public class InMemoryTaskManager implements TaskManager {
         }
         epics.clear();
         subTasks.clear();
+        trackedSubtasks.clear();
+        timelines.clear();
+        epicSubtaskStatuses.clear();
+        epicStatuses.clear();
     }
 
     //Очистка всех подзадач и обновление статуса эпиков
     @Override
     public void clearAllSubtasks() {
+        touchHistory();
         for (Subtask subTask : subTasks.values()) {
-            prioritizedTasks.remove(subTask);
+            touchSubtask(subTask.getId());
+            removeFromIndexes(subTask);
             historyManager.remove(subTask.getId());
         }
         subTasks.clear();
+        trackedSubtasks.clear();
+        timelines.clear();
+        epicSubtaskStatuses.clear();
         for (Epic epic : epics.values()) {
-            epic.clearSubtaskArray();
+            touchEpic(epic.getId());
+            removePrioritized(epic);
+            epic.clearSubtaskArray(); // вместе со счётчиками
+            epic.setTimeWindow(null, null, null);
             epic.setStatus(Status.NEW);
+            epicStatuses.put(epic.getId(), Status.NEW);
         }
     }
 
@@ -293,9 +1010,517 @@ public class InMemoryTaskManager implements TaskManager {
         return historyManager.getHistory();
     }
 
+    @Override
+    public List<Task> getTasksByStatus(Status status) {
+        return collect(taskStatuses.ids(status), tasks);
+    }
+
+    @Override
+    public List<Epic> getEpicsByStatus(Status status) {
+        return collect(epicStatuses.ids(status), epics);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksByStatus(Status status) {
+        return collect(subtaskStatuses.ids(status), subTasks);
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasksByStatus(int idEpic, Status status) {
+        StatusIndex statuses = epicSubtaskStatuses.get(idEpic);
+        return statuses != null ? collect(statuses.ids(status), subTasks) : List.of();
+    }
+
+    @Override
+    public List<Task> searchTasks(String query, boolean matchAll) {
+        if (query == null) {
+            throw new IllegalArgumentException("Запрос не может быть null");
+        }
+        List<Integer> ids = textIndex.search(query, matchAll);
+        List<Task> result = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            result.add(findAny(id));
+        }
+        return result;
+    }
+
+    // Подсчёт по индексу за O(1)
+    @Override
+    public int countByStatus(Type type, Status status) {
+        switch (type) {
+            case TASK:
+                return taskStatuses.count(status);
+            case EPIC:
+                return epicStatuses.count(status);
+            case SUBTASK:
+                return subtaskStatuses.count(status);
+            default:
+                throw new IllegalArgumentException("Неизвестный тип задачи: " + type);
+        }
+    }
+
+    // Планировщик выбирает источник кандидатов с наименьшей оценкой числа строк: поиск по id,
+    // подзадачи эпика, индекс статусов, текстовый индекс, индекс интервалов или обход по типу.
+    // Остальные условия проверяются фильтром над потоком кандидатов, смещение и лимит
+    // применяются к нему же, поэтому результат не копируется целиком
+    @Override
+    public Iterable<Task> query(TaskQuery query) {
+        QueryPlan plan = plan(query);
+        return () -> plan.source.get()
+                .filter(task -> matches(task, query))
+                .skip(query.getOffset())
+                .limit(query.getLimit())
+                .iterator();
+    }
+
+    @Override
+    public String explain(TaskQuery query) {
+        QueryPlan plan = plan(query);
+        StringJoiner filters = new StringJoiner(", ");
+        if (query.getId() != null) filters.add("id=" + query.getId());
+        if (query.getType() != null) filters.add("type=" + query.getType());
+        if (query.getStatus() != null) filters.add("status=" + query.getStatus());
+        if (query.getEpicId() != null) filters.add("epic=" + query.getEpicId());
+        if (query.getFrom() != null) filters.add("time=[" + query.getFrom() + ", " + query.getTo() + ")");
+        if (query.getText() != null) {
+            filters.add("text" + (query.isTextMatchAll() ? "(all)" : "(any)") + "=\"" + query.getText() + "\"");
+        }
+        StringJoiner candidates = new StringJoiner(", ");
+        plan.candidates.forEach((access, estimate) -> candidates.add(access + "≈" + estimate));
+        return "источник: " + plan.access + " ≈" + plan.estimate + ", порядок: " + plan.order + "\n"
+                + "фильтр: " + (filters.length() > 0 ? filters : "-") + "\n"
+                + "смещение: " + query.getOffset() + ", лимит: "
+                + (query.getLimit() == Integer.MAX_VALUE ? "-" : query.getLimit()) + "\n"
+                + "варианты: " + candidates;
+    }
+
+    private QueryPlan plan(TaskQuery query) {
+        if (query == null) {
+            throw new IllegalArgumentException("Запрос не может быть null");
+        }
+        Type type = query.getType();
+        Status status = query.getStatus();
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+        QueryPlan best = null;
+
+        if (query.getId() != null) {
+            int id = query.getId();
+            Task task = findAny(id);
+            best = choose(best, new QueryPlan("ID_LOOKUP", task != null ? 1 : 0, "-",
+                    () -> task != null ? Stream.of(task) : Stream.empty()), candidates);
+        }
+        if (query.getEpicId() != null && (type == null || type == Type.SUBTASK)) {
+            Epic epic = epics.get(query.getEpicId());
+            IntList ids;
+            if (epic == null) {
+                ids = new IntList();
+            } else if (status != null) {
+                StatusIndex statuses = epicSubtaskStatuses.get(epic.getId());
+                ids = statuses != null ? statuses.ids(status) : new IntList();
+            } else {
+                ids = epic.getSubtaskIds();
+            }
+            best = choose(best, new QueryPlan("EPIC_SUBTASKS", ids.size(), "добавление в эпик",
+                    () -> stream(ids, subTasks)), candidates);
+        }
+        if (status != null) {
+            int estimate = 0;
+            for (Type indexed : type != null ? new Type[]{type} : Type.values()) {
+                estimate += countByStatus(indexed, status);
+            }
+            best = choose(best, new QueryPlan("STATUS_INDEX", estimate, "индексация статуса", () -> {
+                if (type == Type.TASK) return stream(taskStatuses.ids(status), tasks);
+                if (type == Type.EPIC) return stream(epicStatuses.ids(status), epics);
+                if (type == Type.SUBTASK) return stream(subtaskStatuses.ids(status), subTasks);
+                return Stream.of(stream(taskStatuses.ids(status), tasks),
+                                stream(epicStatuses.ids(status), epics),
+                                stream(subtaskStatuses.ids(status), subTasks))
+                        .flatMap(part -> part);
+            }), candidates);
+        }
+        if (query.getText() != null) {
+            String text = query.getText();
+            boolean matchAll = query.isTextMatchAll();
+            best = choose(best, new QueryPlan("TEXT_INDEX", textIndex.estimate(text, matchAll), "релевантность",
+                    () -> textIndex.search(text, matchAll).stream().map(this::findAny)), candidates);
+        }
+        if (query.getFrom() != null && type != Type.EPIC) {
+            // Эпики в индексе интервалов не хранятся: без указания типа подходящие по окну эпики
+            // отбираются просмотром, сортируются и сливаются с обходом индекса по времени начала
+            LocalDateTime from = query.getFrom();
+            LocalDateTime to = query.getTo();
+            int estimate = intervalIndex.countStarting(from, to) + (type == null ? epics.size() : 0);
+            best = choose(best, new QueryPlan("TIME_RANGE", estimate, "время начала", () -> {
+                Iterator<Task> timed = intervalIndex.range(from, to).iterator();
+                if (type == null) {
+                    List<Task> epicsInRange = new ArrayList<>();
+                    for (Epic epic : epics.values()) {
+                        if (inWindow(epic, from, to)) {
+                            epicsInRange.add(epic);
+                        }
+                    }
+                    epicsInRange.sort(PRIORITY_ORDER);
+                    timed = mergeByStart(timed, epicsInRange.iterator());
+                }
+                return StreamSupport.stream(Spliterators.spliteratorUnknownSize(timed, Spliterator.ORDERED), false);
+            }), candidates);
+        }
+        if (type != null) {
+            IntObjectMap<? extends Task> source = type == Type.TASK ? tasks : type == Type.EPIC ? epics : subTasks;
+            best = choose(best, new QueryPlan("TYPE_SCAN", source.size(), "id",
+                    () -> Collections.<Task>unmodifiableCollection(source.values()).stream()), candidates);
+        }
+        return choose(best, new QueryPlan("FULL_SCAN", tasks.size() + epics.size() + subTasks.size(), "тип, id",
+                () -> Stream.<Stream<? extends Task>>of(tasks.values().stream(), epics.values().stream(),
+                                subTasks.values().stream())
+                        .flatMap(part -> part)), candidates);
+    }
+
+    // При равной оценке остаётся источник, рассмотренный раньше
+    private static QueryPlan choose(QueryPlan best, QueryPlan candidate, Map<String, Integer> candidates) {
+        candidates.put(candidate.access, candidate.estimate);
+        candidate.candidates = candidates;
+        return best == null || candidate.estimate < best.estimate ? candidate : best;
+    }
+
+    // Все условия проверяются по текущим полям задачи, в том числе те, что уже обеспечил источник
+    private boolean matches(Task task, TaskQuery query) {
+        if (task == null) {
+            return false;
+        }
+        if (query.getId() != null && task.getId() != query.getId()) {
+            return false;
+        }
+        if (query.getType() != null && task.getType() != query.getType()) {
+            return false;
+        }
+        if (query.getStatus() != null && task.getStatus() != query.getStatus()) {
+            return false;
+        }
+        if (query.getEpicId() != null
+                && !(task instanceof Subtask && ((Subtask) task).getIdEpic() == query.getEpicId())) {
+            return false;
+        }
+        if (query.getFrom() != null && !inWindow(task, query.getFrom(), query.getTo())) {
+            return false;
+        }
+        return query.getText() == null || textIndex.matches(task.getId(), query.getText(), query.isTextMatchAll());
+    }
+
+    // Те же границы, что у getTasksInRange: начинается в [from, to) или идёт в момент from
+    private static boolean inWindow(Task task, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = task.getStartTime();
+        if (start == null || !start.isBefore(to)) {
+            return false;
+        }
+        LocalDateTime end = task.getDuration() != null ? task.getEndTime() : start;
+        return !start.isBefore(from) || end.isAfter(from);
+    }
+
+    // Слияние двух обходов, упорядоченных по началу и id
+    private static Iterator<Task> mergeByStart(Iterator<Task> first, Iterator<Task> second) {
+        return new Iterator<>() {
+            private Task nextFirst = first.hasNext() ? first.next() : null;
+            private Task nextSecond = second.hasNext() ? second.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return nextFirst != null || nextSecond != null;
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Task result;
+                if (nextSecond == null || nextFirst != null && PRIORITY_ORDER.compare(nextFirst, nextSecond) <= 0) {
+                    result = nextFirst;
+                    nextFirst = first.hasNext() ? first.next() : null;
+                } else {
+                    result = nextSecond;
+                    nextSecond = second.hasNext() ? second.next() : null;
+                }
+                return result;
+            }
+        };
+    }
+
+    private Task findAny(int id) {
+        Task task = tasks.get(id);
+        if (task == null) task = epics.get(id);
+        if (task == null) task = subTasks.get(id);
+        return task;
+    }
+
+    private static Stream<Task> stream(IntList ids, IntObjectMap<? extends Task> source) {
+        return StreamSupport.intStream(Spliterators.spliterator(ids.iterator(), ids.size(), Spliterator.ORDERED),
+                false).mapToObj(source::get);
+    }
+
+    // Выборка по набору id индекса: стоимость пропорциональна результату, а не числу задач
+    private static <T> List<T> collect(IntList ids, IntObjectMap<T> source) {
+        List<T> result = new ArrayList<>(ids.size());
+        ids.forEach(id -> result.add(source.get(id)));
+        return Collections.unmodifiableList(result);
+    }
+
+    // Новая версия строится из предыдущей: в неизменяемые карты переносятся только записи,
+    // изменённые после неё, O(m) для m изменённых записей. Без изменений возвращается тот же срез.
+    // Первый срез и срез после переполнения журнала (см. logChange) строятся целиком
+    @Override
+    public TaskSnapshot snapshot() {
+        if (batchLog != null) {
+            throw new IllegalStateException("Срез нельзя получить внутри пакета");
+        }
+        return publishSnapshot();
+    }
+
+    // Срез без проверки пакета: FileBackedTaskManager пишет по нему снимок и при фиксации пакета
+    protected TaskSnapshot publishSnapshot() {
+        if (published == null || changesOverflowed) {
+            PersistentIntMap<Task> taskVersions = PersistentIntMap.empty();
+            for (Task task : tasks.values()) {
+                taskVersions = taskVersions.put(task.getId(), TaskSnapshot.copyOf(task));
+            }
+            PersistentIntMap<Epic> epicVersions = PersistentIntMap.empty();
+            for (Epic epic : epics.values()) {
+                epicVersions = epicVersions.put(epic.getId(), (Epic) TaskSnapshot.copyOf(epic));
+            }
+            PersistentIntMap<Subtask> subtaskVersions = PersistentIntMap.empty();
+            for (Subtask subtask : subTasks.values()) {
+                subtaskVersions = subtaskVersions.put(subtask.getId(), (Subtask) TaskSnapshot.copyOf(subtask));
+            }
+            published = new TaskSnapshot(published == null ? 1 : published.getVersion() + 1,
+                    taskVersions, epicVersions, subtaskVersions);
+            changesOverflowed = false;
+        } else if (!changedTasks.isEmpty() || !changedEpics.isEmpty() || !changedSubtasks.isEmpty()) {
+            published = new TaskSnapshot(published.getVersion() + 1,
+                    applyChanges(published.tasksMap(), changedTasks, tasks),
+                    applyChanges(published.epicsMap(), changedEpics, epics),
+                    applyChanges(published.subtasksMap(), changedSubtasks, subTasks));
+            changedTasks.clear();
+            changedEpics.clear();
+            changedSubtasks.clear();
+        }
+        return published;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Task> PersistentIntMap<T> applyChanges(PersistentIntMap<T> versions, IntList changed,
+                                                                     IntObjectMap<T> current) {
+        for (PrimitiveIterator.OfInt ids = changed.iterator(); ids.hasNext(); ) {
+            int id = ids.nextInt();
+            T task = current.get(id);
+            versions = task != null ? versions.put(id, (T) TaskSnapshot.copyOf(task)) : versions.remove(id);
+        }
+        return versions;
+    }
+
     @Override
     public Set<Task> getPrioritizedTasks() {
-        return new TreeSet<>(prioritizedTasks);
+        PrioritizedSnapshot snapshot = prioritizedSnapshot();
+        if (snapshot.set == null) {
+            TreeSet<Task> set = new TreeSet<>(PRIORITY_ORDER);
+            set.addAll(new SortedListView(snapshot.items, PRIORITY_ORDER));
+            snapshot.set = Collections.unmodifiableSortedSet(set);
+        }
+        return snapshot.set;
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(int offset, int limit) {
+        return page(prioritizedSnapshot().items, offset, limit);
+    }
+
+    // Двоичный поиск по запомненным временам начала снимка: O(log n + limit)
+    @Override
+    public List<Task> getPrioritizedTasksAfter(LocalDateTime startTime, int id, int limit) {
+        if (startTime == null) {
+            throw new IllegalArgumentException("Время начала курсора не может быть null");
+        }
+        PrioritizedSnapshot snapshot = prioritizedSnapshot();
+        int low = 0;
+        int high = snapshot.items.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int cmp = snapshot.starts[middle].compareTo(startTime);
+            if (cmp < 0 || (cmp == 0 && snapshot.items.get(middle).getId() <= id)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return page(snapshot.items, low, limit);
+    }
+
+    private PrioritizedSnapshot prioritizedSnapshot() {
+        if (prioritizedSnapshot == null || prioritizedSnapshot.version != prioritizedStarts.version()) {
+            prioritizedSnapshot = new PrioritizedSnapshot(prioritizedStarts.version(),
+                    new ArrayList<>(prioritizedTasks), prioritizedStarts);
+        }
+        return prioritizedSnapshot;
+    }
+
+    // Представления читают индекс напрямую: изменение менеджера во время обхода
+    // приводит к ConcurrentModificationException, как у коллекций
+    @Override
+    public Iterable<Task> getTasksInRange(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("Некорректный интервал времени");
+        }
+        return intervalIndex.range(from, to);
+    }
+
+    @Override
+    public Iterable<Task> getTasksAt(LocalDateTime time) {
+        if (time == null) {
+            throw new IllegalArgumentException("Не указано время");
+        }
+        return intervalIndex.at(time);
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime from, Duration duration) {
+        return findFreeSlot(from, duration, null, null);
+    }
+
+    // Задачи обходятся по индексу в порядке начала, начиная с идущих в момент from.
+    // Кандидат сдвигается на конец каждой задачи, которая его перекрывает; первая задача,
+    // начинающаяся не раньше конца окна, означает, что окно свободно
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime from, Duration duration, LocalTime workStart, LocalTime workEnd) {
+        if (from == null || duration == null || duration.isNegative()) {
+            throw new IllegalArgumentException("Некорректное начало или продолжительность");
+        }
+        if ((workStart == null) != (workEnd == null)) {
+            throw new IllegalArgumentException("Рабочие часы должны быть заданы полностью");
+        }
+        if (workStart != null && (!workStart.isBefore(workEnd)
+                || duration.compareTo(Duration.between(workStart, workEnd)) > 0)) {
+            throw new IllegalArgumentException("Окно не помещается в рабочие часы");
+        }
+
+        LocalDateTime slot = alignToWorkHours(from, duration, workStart, workEnd);
+        for (Task task : intervalIndex.range(slot, LocalDateTime.MAX)) {
+            if (task.getDuration() == null) {
+                continue; // задача без продолжительности время не занимает
+            }
+            if (!task.getStartTime().isBefore(slot.plus(duration))) {
+                return slot;
+            }
+            if (task.getEndTime().isAfter(slot)) {
+                slot = alignToWorkHours(task.getEndTime(), duration, workStart, workEnd);
+            }
+        }
+        return slot;
+    }
+
+    // План строится за один проход: задачи сортируются по приоритету и сроку, а курсор времени
+    // идёт только вперёд по занятым интервалам из индекса, поэтому каждая существующая задача
+    // просматривается один раз на весь план. Окно, пропущенное задачей с большим приоритетом,
+    // не заполняется менее важными задачами: они не должны начинаться раньше неё
+    @Override
+    public List<Task> scheduleTasks(List<ScheduleRequest> requests, LocalDateTime from) {
+        if (from == null) {
+            throw new IllegalArgumentException("Не указано начало планирования");
+        }
+        for (ScheduleRequest request : requests) {
+            Task task = request.getTask();
+            if (task instanceof Epic || task.getStartTime() != null || task.getDuration() == null
+                    || task.getDuration().isNegative()) {
+                throw new IllegalArgumentException("Планируются только задачи и подзадачи с продолжительностью "
+                        + "и без времени начала");
+            }
+        }
+        List<ScheduleRequest> ordered = new ArrayList<>(requests);
+        ordered.sort(Comparator.comparingInt(ScheduleRequest::getPriority).reversed()
+                .thenComparing(ScheduleRequest::getDeadline, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        List<Task> unscheduled = new ArrayList<>();
+        batch(manager -> {
+            List<Task> planned = new ArrayList<>();
+            List<LocalDateTime> starts = new ArrayList<>();
+            Iterator<Task> busy = intervalIndex.range(from, LocalDateTime.MAX).iterator();
+            Task nextBusy = nextBusy(busy);
+            LocalDateTime cursor = from;
+
+            for (ScheduleRequest request : ordered) {
+                Duration duration = request.getTask().getDuration();
+                LocalDateTime slot = cursor;
+                // Пропускаем занятые интервалы, перекрывающие окно; конец пропущенных не меньше курсора
+                while (nextBusy != null && nextBusy.getStartTime().isBefore(slot.plus(duration))) {
+                    if (nextBusy.getEndTime().isAfter(slot)) {
+                        slot = nextBusy.getEndTime();
+                    }
+                    nextBusy = nextBusy(busy);
+                }
+                LocalDateTime end = slot.plus(duration);
+                if (request.getDeadline() != null && end.isAfter(request.getDeadline())) {
+                    unscheduled.add(request.getTask());
+                    // Пропущенные интервалы уже учтены в slot, но курсор задачей не занят
+                    cursor = slot;
+                    continue;
+                }
+                planned.add(request.getTask());
+                starts.add(slot);
+                cursor = end;
+            }
+
+            // Изменения только после построения плана: обход индекса не переживает изменений
+            for (int i = 0; i < planned.size(); i++) {
+                Task task = planned.get(i);
+                task.setStartTime(starts.get(i));
+                try {
+                    schedule(manager, task);
+                } catch (RuntimeException e) {
+                    for (Task changed : planned.subList(0, i + 1)) {
+                        changed.setStartTime(null);
+                    }
+                    throw e;
+                }
+            }
+        });
+        return unscheduled;
+    }
+
+    private static Task nextBusy(Iterator<Task> busy) {
+        while (busy.hasNext()) {
+            Task task = busy.next();
+            if (task.getDuration() != null) {
+                return task; // задача без продолжительности время не занимает
+            }
+        }
+        return null;
+    }
+
+    private void schedule(TaskManager manager, Task task) {
+        if (task instanceof Subtask) {
+            if (subTasks.containsKey(task.getId())) {
+                manager.updateSubtask((Subtask) task);
+            } else {
+                manager.addNewSubtask((Subtask) task);
+            }
+        } else if (tasks.containsKey(task.getId())) {
+            manager.updateTask(task);
+        } else {
+            manager.addNewTask(task);
+        }
+    }
+
+    // Ближайшее начало не раньше time, при котором окно помещается в рабочие часы
+    private static LocalDateTime alignToWorkHours(LocalDateTime time, Duration duration, LocalTime workStart,
+                                                  LocalTime workEnd) {
+        if (workStart == null) {
+            return time;
+        }
+        if (time.toLocalTime().isBefore(workStart)) {
+            return time.toLocalDate().atTime(workStart);
+        }
+        if (time.plus(duration).isAfter(time.toLocalDate().atTime(workEnd))) {
+            return time.toLocalDate().plusDays(1).atTime(workStart);
+        }
+        return time;
     }
 
     @Override
@@ -323,43 +1548,216 @@ public class InMemoryTaskManager implements TaskManager {
             return false;
         }
 
-        // Проверяем пересечение с обычными задачами
-        for (Task existingTask : tasks.values()) {
-            if (existingTask.getId() == task.getId()) {
-                continue; // Пропускаем сравнение с самим собой
-            }
-            if (isTasksIntersect(task, existingTask)) {
-                return true;
+        // Поиск по индексу интервалов задач и подзадач, сама задача пропускается по id
+        return intervalIndex.overlapsAny(task.getStartTime(), task.getEndTime(), task.getId());
+    }
+
+    // Окно эпика берётся из его упорядоченных мультимножеств за O(log k),
+    // после чего эпик переставляется в приоритетном списке
+    protected void updateEpicTime(int epicId) {
+        Epic epic = epics.get(epicId);
+        if (epic == null) return;
+
+        removePrioritized(epic);
+        applyTimeWindow(epic);
+        addPrioritized(epic);
+    }
+
+    // Прежние значения записей, изменённых в текущем пакете (null — записи не было)
+    private static class BatchLog {
+        final int idCounter;
+        final HashMap<Integer, Task> tasks = new HashMap<>();
+        final HashMap<Integer, EpicState> epics = new HashMap<>();
+        final HashMap<Integer, Subtask> subtasks = new HashMap<>();
+        final LinkedHashSet<Integer> pendingEpics = new LinkedHashSet<>(); // эпики для пересчёта в конце
+        final List<Task> created = new ArrayList<>(); // задачи, получившие id в пакете
+        List<Task> history; // история до первого её изменения в пакете
+
+        BatchLog(int idCounter) {
+            this.idCounter = idCounter;
+        }
+    }
+
+    // Поля эпика, которые менеджер меняет на месте (окно эпика пересчитывается при откате)
+    private static class EpicState {
+        final Epic epic;
+        final Status status;
+        final IntList subtaskIds;
+
+        EpicState(Epic epic) {
+            this.epic = epic;
+            this.status = epic.getStatus();
+            this.subtaskIds = epic.getSubtaskIds().copy();
+        }
+    }
+
+    // Значения подзадачи на момент её учёта в эпике
+    private static class TrackedSubtask {
+        final Status status;
+        final LocalDateTime start;
+        final LocalDateTime end;
+        final Duration duration;
+
+        TrackedSubtask(Subtask subtask) {
+            this.status = subtask.getStatus();
+            this.start = subtask.getStartTime();
+            this.end = subtask.getEndTime();
+            this.duration = subtask.getDuration();
+        }
+    }
+
+    // Окно эпика: мультимножества начал и окончаний подзадач (время -> число подзадач)
+    // и сумма продолжительностей. Добавление и удаление подзадачи — O(log k)
+    private static class EpicTimeline {
+        private final TreeMap<LocalDateTime, Integer> starts = new TreeMap<>();
+        private final TreeMap<LocalDateTime, Integer> ends = new TreeMap<>();
+        private Duration total = Duration.ZERO;
+        private int withDuration; // подзадачи с продолжительностью
+
+        void add(TrackedSubtask subtask) {
+            if (subtask.start != null) starts.merge(subtask.start, 1, Integer::sum);
+            if (subtask.end != null) ends.merge(subtask.end, 1, Integer::sum);
+            if (subtask.duration != null) {
+                total = total.plus(subtask.duration);
+                withDuration++;
             }
         }
 
-        // Проверяем пересечение с подзадачами
-        for (Subtask existingSubtask : subTasks.values()) {
-            if (existingSubtask.getId() == task.getId()) {
-                continue; // Пропускаем сравнение с самим собой
+        void remove(TrackedSubtask subtask) {
+            if (subtask.start != null) decrement(starts, subtask.start);
+            if (subtask.end != null) decrement(ends, subtask.end);
+            if (subtask.duration != null) {
+                total = total.minus(subtask.duration);
+                withDuration--;
             }
-            if (isTasksIntersect(task, existingSubtask)) {
-                return true;
+        }
+
+        LocalDateTime start() {
+            return starts.isEmpty() ? null : starts.firstKey();
+        }
+
+        LocalDateTime end() {
+            return ends.isEmpty() ? null : ends.lastKey();
+        }
+
+        Duration duration() {
+            return withDuration > 0 ? total : null;
+        }
+
+        private static void decrement(TreeMap<LocalDateTime, Integer> counts, LocalDateTime time) {
+            counts.computeIfPresent(time, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    // Неизменяемый список, построенный при данной версии источника
+    private static class Snapshot<T> {
+        final long version;
+        final List<T> items;
+
+        Snapshot(long version, List<T> items) {
+            this.version = version;
+            this.items = Collections.unmodifiableList(items);
+        }
+    }
+
+    // Снимок приоритетного списка с временами начала, по которым он упорядочен.
+    // Множество для getPrioritizedTasks строится при первом запросе
+    private static class PrioritizedSnapshot {
+        final long version;
+        final List<Task> items;
+        final LocalDateTime[] starts;
+        SortedSet<Task> set;
+
+        PrioritizedSnapshot(long version, List<Task> items, IntObjectMap<LocalDateTime> recordedStarts) {
+            this.version = version;
+            this.items = Collections.unmodifiableList(items);
+            this.starts = new LocalDateTime[items.size()];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = recordedStarts.get(items.get(i).getId());
             }
         }
+    }
 
-        return false;
+    // Выбранный источник кандидатов запроса и оценки всех рассмотренных
+    private static class QueryPlan {
+        final String access;
+        final int estimate;
+        final String order;
+        final Supplier<Stream<Task>> source; // новый поток при каждом обходе результата
+        Map<String, Integer> candidates;
+
+        QueryPlan(String access, int estimate, String order, Supplier<Stream<Task>> source) {
+            this.access = access;
+            this.estimate = estimate;
+            this.order = order;
+            this.source = source;
+        }
     }
 
-    protected void updateEpicTime(int epicId) {
-        Epic epic = epics.get(epicId);
-        if (epic == null) return;
+    // Неизменяемый SortedSet поверх отсортированного списка: TreeSet.addAll строит из него дерево за O(n)
+    private static class SortedListView extends AbstractSet<Task> implements SortedSet<Task> {
+        private final List<Task> sorted;
+        private final Comparator<? super Task> comparator;
 
-        List<Subtask> subtasks = printArrayIdSubtask(epicId);
-        if (subtasks.isEmpty()) {
-            epic.setEndTime(null);
-            return;
+        SortedListView(List<Task> sorted, Comparator<? super Task> comparator) {
+            this.sorted = sorted;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public Comparator<? super Task> comparator() {
+            return comparator;
+        }
+
+        @Override
+        public Iterator<Task> iterator() {
+            return Collections.unmodifiableList(sorted).iterator();
+        }
+
+        @Override
+        public int size() {
+            return sorted.size();
         }
 
-        LocalDateTime startTime = subtasks.stream().map(Subtask::getStartTime).filter(Objects::nonNull).min(LocalDateTime::compareTo).orElse(null);
+        @Override
+        public Task first() {
+            if (sorted.isEmpty()) throw new NoSuchElementException();
+            return sorted.get(0);
+        }
 
-        LocalDateTime endTime = subtasks.stream().map(Subtask::getEndTime).filter(Objects::nonNull).max(LocalDateTime::compareTo).orElse(null);
+        @Override
+        public Task last() {
+            if (sorted.isEmpty()) throw new NoSuchElementException();
+            return sorted.get(sorted.size() - 1);
+        }
 
-        epic.setEndTime(endTime);
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Task && Collections.binarySearch(sorted, (Task) o, comparator) >= 0;
+        }
+
+        @Override
+        public SortedSet<Task> subSet(Task fromElement, Task toElement) {
+            if (comparator.compare(fromElement, toElement) > 0) {
+                throw new IllegalArgumentException("Начало диапазона больше конца");
+            }
+            return new SortedListView(sorted.subList(indexOf(fromElement), indexOf(toElement)), comparator);
+        }
+
+        @Override
+        public SortedSet<Task> headSet(Task toElement) {
+            return new SortedListView(sorted.subList(0, indexOf(toElement)), comparator);
+        }
+
+        @Override
+        public SortedSet<Task> tailSet(Task fromElement) {
+            return new SortedListView(sorted.subList(indexOf(fromElement), sorted.size()), comparator);
+        }
+
+        // Позиция первого элемента не меньше данного, двоичным поиском
+        private int indexOf(Task element) {
+            int index = Collections.binarySearch(sorted, element, comparator);
+            return index >= 0 ? index : -index - 1;
+        }
     }
 }
@@ -0,0 +1,208 @@
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Карта int -> объект с открытой адресацией для хранилищ задач.
+// Ключи лежат в массиве int, значения — в параллельном массиве: на запись не нужны ни узел HashMap,
+// ни объект Integer, а поиск по id ничего не создаёт. Коллизии разрешаются линейным пробированием,
+// удаление сдвигает следующие записи назад, поэтому «надгробий» нет.
+// Хэш такой же, как у HashMap для Integer, поэтому при последовательных id порядок обхода
+// совпадает с прежним (по возрастанию id, пока id меньше ёмкости). Значения null не хранятся.
+public class IntObjectMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values; // null — свободная ячейка
+    private int size;
+    private int mask;
+    private int modCount;
+    private long version; // любые изменения содержимого, включая замену значения
+    private Values valuesView;
+
+    public IntObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int index = indexOf(key);
+        return index >= 0 ? (V) values[index] : null;
+    }
+
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    // Возвращает прежнее значение или null
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Значение не может быть null");
+        }
+        int index = slot(key);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                V previous = (V) values[index];
+                values[index] = value;
+                version++;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+        modCount++;
+        version++;
+        if (size > (mask + 1) * 3 / 4) {
+            resize((mask + 1) << 1);
+        }
+        return null;
+    }
+
+    // Возвращает удалённое значение или null
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        V previous = (V) values[index];
+        // Сдвигаем назад записи цепочки, которые могут занять освободившуюся ячейку
+        int gap = index;
+        int next = (index + 1) & mask;
+        while (values[next] != null) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+        size--;
+        modCount++;
+        version++;
+        return previous;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(values, null);
+            size = 0;
+            modCount++;
+            version++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Растёт при каждом изменении: по нему читатели проверяют, устарел ли их снимок
+    public long version() {
+        return version;
+    }
+
+    // Представление значений без копирования, как HashMap.values()
+    public Collection<V> values() {
+        if (valuesView == null) {
+            valuesView = new Values();
+        }
+        return valuesView;
+    }
+
+    private int indexOf(int key) {
+        int index = slot(key);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slot(int key) {
+        return (key ^ (key >>> 16)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int index = slot(oldKeys[i]);
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new Iterator<>() {
+                private final int expectedModCount = modCount;
+                private int index = advance(0);
+
+                @Override
+                public boolean hasNext() {
+                    return index < values.length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public V next() {
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (index >= values.length) {
+                        throw new NoSuchElementException();
+                    }
+                    V value = (V) values[index];
+                    index = advance(index + 1);
+                    return value;
+                }
+
+                private int advance(int from) {
+                    while (from < values.length && values[from] == null) {
+                        from++;
+                    }
+                    return from;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
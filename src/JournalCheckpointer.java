@@ -0,0 +1,113 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Фоновый checkpoint для менеджера в режиме журнала.
+// Периодически проверяет размер активного файла журнала и при превышении порога по байтам
+// или по количеству записей пишет свежий снимок, после чего перенесённые сегменты журнала удаляются.
+// Запись снимка идёт в отдельном потоке и не держит блокировку мутаций (см. checkpoint())
+public class JournalCheckpointer implements AutoCloseable {
+    private final FileBackedTaskManager manager;
+    private final long maxJournalBytes;
+    private final long maxJournalRecords;
+    private final long checkIntervalMillis;
+    private final ScheduledExecutorService executor;
+
+    // Счётчики для мониторинга
+    private final AtomicLong checkpointCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong lastCheckpointNanos = new AtomicLong();
+    private final AtomicLong maxCheckpointNanos = new AtomicLong();
+    private final AtomicLong totalCheckpointNanos = new AtomicLong();
+    private volatile RuntimeException lastFailure;
+
+    public JournalCheckpointer(FileBackedTaskManager manager, long maxJournalBytes, long maxJournalRecords,
+                               long checkIntervalMillis) {
+        if (!manager.isJournalMode()) {
+            throw new IllegalArgumentException("Менеджер должен работать в режиме журнала");
+        }
+        if (maxJournalBytes <= 0 || maxJournalRecords <= 0 || checkIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Пороги и интервал проверки должны быть положительными");
+        }
+        this.manager = manager;
+        this.maxJournalBytes = maxJournalBytes;
+        this.maxJournalRecords = maxJournalRecords;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Запуск периодической проверки
+    public void start() {
+        executor.scheduleWithFixedDelay(this::runSafely, checkIntervalMillis, checkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    // Запись снимка, если журнал превысил один из порогов
+    public boolean checkpointIfNeeded() {
+        if (manager.getJournalBytes() < maxJournalBytes && manager.getJournalRecords() < maxJournalRecords) {
+            return false;
+        }
+        long start = System.nanoTime();
+        manager.checkpoint();
+        long elapsed = System.nanoTime() - start;
+
+        checkpointCount.incrementAndGet();
+        lastCheckpointNanos.set(elapsed);
+        totalCheckpointNanos.addAndGet(elapsed);
+        maxCheckpointNanos.accumulateAndGet(elapsed, Math::max);
+        return true;
+    }
+
+    public long getCheckpointCount() {
+        return checkpointCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+
+    public long getLastCheckpointNanos() {
+        return lastCheckpointNanos.get();
+    }
+
+    public long getMaxCheckpointNanos() {
+        return maxCheckpointNanos.get();
+    }
+
+    public long getTotalCheckpointNanos() {
+        return totalCheckpointNanos.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Исключение в периодической задаче отменило бы все следующие запуски,
+    // поэтому ошибка только запоминается, а журнал продолжает копиться до следующей попытки
+    private void runSafely() {
+        try {
+            checkpointIfNeeded();
+        } catch (RuntimeException e) {
+            failureCount.incrementAndGet();
+            lastFailure = e;
+        }
+    }
+}
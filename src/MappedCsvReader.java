@@ -0,0 +1,171 @@
+import task.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+// Потоковое чтение CSV-снимка через отображение файла в память.
+// Строки разбираются прямо из байтов буфера (см. CsvTaskCodec): промежуточные String для строк
+// и полей не создаются, строки появляются только для name и description самих задач.
+// Файл отображается окнами, поэтому размер снимка не ограничен 2 ГБ.
+// Некорректная строка пропускается.
+public class MappedCsvReader {
+    private static final long WINDOW_SIZE = 1L << 28; // 256 МБ на одно отображение
+    private static final int PARALLEL_CHUNK_SIZE = 1 << 20; // кусок для одного потока при параллельном разборе
+
+    private final CsvTaskCodec codec = new CsvTaskCodec(); // свой буфер разбора у каждого читателя
+
+    // Чтение всех задач файла, первая строка — заголовок
+    public static void read(Path file, Consumer<Task> consumer) throws IOException {
+        new MappedCsvReader().readFile(file, consumer);
+    }
+
+    // Параллельное чтение: каждое окно делится на куски по границам строк, куски разбираются
+    // в пуле ForkJoin и склеиваются в исходном порядке. Результат совпадает с read()
+    public static List<Task> readParallel(Path file, ForkJoinPool pool) throws IOException {
+        List<Task> result = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long windowStart = 0;
+            boolean header = true;
+
+            while (windowStart < size) {
+                long windowLength = Math.min(WINDOW_SIZE, size - windowStart);
+                boolean lastWindow = windowStart + windowLength == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+                int limit = buffer.limit();
+
+                int from = 0;
+                if (header) {
+                    from = indexOf(buffer, (byte) '\n', 0, limit) + 1;
+                    if (from == 0) {
+                        if (!lastWindow) throw tooLongRow(windowStart);
+                        break; // в файле только заголовок
+                    }
+                    header = false;
+                }
+                int to = limit;
+                if (!lastWindow) {
+                    to = lastIndexOf(buffer, (byte) '\n', from, limit) + 1;
+                    if (to == 0) throw tooLongRow(windowStart + from);
+                }
+
+                result.addAll(pool.invoke(new ParseChunk(buffer, from, to)));
+                windowStart += to;
+            }
+        }
+        return result;
+    }
+
+    private void readFile(Path file, Consumer<Task> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long windowStart = 0;
+            boolean header = true;
+
+            while (windowStart < size) {
+                long windowLength = Math.min(WINDOW_SIZE, size - windowStart);
+                boolean lastWindow = windowStart + windowLength == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+
+                int rowStart = 0;
+                int limit = buffer.limit();
+                while (rowStart < limit) {
+                    int rowEnd = indexOf(buffer, (byte) '\n', rowStart, limit);
+                    if (rowEnd < 0) {
+                        if (!lastWindow) break; // строка продолжается в следующем окне
+                        rowEnd = limit;
+                    }
+                    if (header) {
+                        header = false;
+                    } else {
+                        Task task = codec.decode(buffer, rowStart, rowEnd);
+                        if (task != null) {
+                            consumer.accept(task);
+                        }
+                    }
+                    rowStart = rowEnd + 1;
+                }
+
+                if (rowStart == 0 && !lastWindow) {
+                    throw tooLongRow(windowStart);
+                }
+                windowStart += Math.min(rowStart, limit);
+            }
+        }
+    }
+
+    // Разбор всех строк диапазона [from, to), диапазон начинается с начала строки
+    private List<Task> parseRange(ByteBuffer buffer, int from, int to) {
+        List<Task> result = new ArrayList<>();
+        int rowStart = from;
+        while (rowStart < to) {
+            int rowEnd = indexOf(buffer, (byte) '\n', rowStart, to);
+            if (rowEnd < 0) rowEnd = to;
+            Task task = codec.decode(buffer, rowStart, rowEnd);
+            if (task != null) {
+                result.add(task);
+            }
+            rowStart = rowEnd + 1;
+        }
+        return result;
+    }
+
+    private static ManagerSaveException tooLongRow(long position) {
+        return new ManagerSaveException("Слишком длинная строка в файле на позиции " + position);
+    }
+
+    // Кусок окна для параллельного разбора. Делится пополам по ближайшему переводу строки,
+    // у каждого листа свой экземпляр разборщика со своим буфером для строк
+    private static class ParseChunk extends RecursiveTask<List<Task>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ByteBuffer buffer; // задача живёт только внутри пула и не сериализуется
+        private final int from;
+        private final int to;
+
+        ParseChunk(ByteBuffer buffer, int from, int to) {
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Task> compute() {
+            if (to - from > PARALLEL_CHUNK_SIZE) {
+                int split = indexOf(buffer, (byte) '\n', from + (to - from) / 2, to) + 1;
+                if (split > 0 && split < to) {
+                    ParseChunk left = new ParseChunk(buffer, from, split);
+                    left.fork();
+                    List<Task> right = new ParseChunk(buffer, split, to).compute();
+                    List<Task> result = left.join();
+                    result.addAll(right);
+                    return result;
+                }
+            }
+            return new MappedCsvReader().parseRange(buffer.duplicate(), from, to);
+        }
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == value) return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(ByteBuffer buffer, byte value, int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (buffer.get(i) == value) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,203 @@
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Неизменяемая карта int -> объект для снимков менеджера (см. TaskSnapshot).
+// Префиксное дерево по 5 бит ключа на уровень (7 уровней для int), в узле — битовая маска занятых
+// ветвей и плотный массив только занятых. put и remove не меняют карту, а возвращают новую:
+// копируется лишь путь от корня до ключа (не больше 7 узлов), остальные узлы общие с прежней версией.
+// Обход идёт по возрастанию ключа (для неотрицательных id). Значения null не хранятся
+public final class PersistentIntMap<V> implements Iterable<V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int TOP_SHIFT = 30; // верхний уровень берёт старшие 2 бита
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Node node = root;
+        for (int shift = TOP_SHIFT; node != null; shift -= BITS) {
+            int bit = 1 << ((key >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object child = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (shift == 0) {
+                return (V) child;
+            }
+            node = (Node) child;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    public PersistentIntMap<V> put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Значение не может быть null");
+        }
+        int[] added = new int[1];
+        Node updated = put(root, TOP_SHIFT, key, value, added);
+        return updated == root ? this : new PersistentIntMap<>(updated, size + added[0]);
+    }
+
+    public PersistentIntMap<V> remove(int key) {
+        Node updated = remove(root, TOP_SHIFT, key);
+        return updated == root ? this : new PersistentIntMap<>(updated, size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<>() {
+            // Путь от корня: узел и позиция следующей ветви в нём
+            private final ArrayDeque<Node> nodes = new ArrayDeque<>();
+            private final ArrayDeque<Integer> positions = new ArrayDeque<>();
+            private Object next;
+
+            {
+                if (root != null) {
+                    nodes.push(root);
+                    positions.push(0);
+                }
+                advance();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                V value = (V) next;
+                advance();
+                return value;
+            }
+
+            // Спуск до следующего листа: на глубине 7 в узле лежат значения
+            private void advance() {
+                next = null;
+                while (!nodes.isEmpty()) {
+                    Node node = nodes.peek();
+                    int position = positions.pop();
+                    if (position == node.slots.length) {
+                        nodes.pop();
+                        continue;
+                    }
+                    positions.push(position + 1);
+                    Object child = node.slots[position];
+                    if (nodes.size() == (TOP_SHIFT / BITS) + 1) {
+                        next = child;
+                        return;
+                    }
+                    nodes.push((Node) child);
+                    positions.push(0);
+                }
+            }
+        };
+    }
+
+    private static Node put(Node node, int shift, int key, Object value, int[] added) {
+        int bit = 1 << ((key >>> shift) & MASK);
+        int bitmap = node != null ? node.bitmap : 0;
+        int index = Integer.bitCount(bitmap & (bit - 1));
+        boolean present = (bitmap & bit) != 0;
+        Object child;
+        if (shift == 0) {
+            if (present && node.slots[index] == value) {
+                return node;
+            }
+            child = value;
+            if (!present) {
+                added[0] = 1;
+            }
+        } else {
+            Node previous = present ? (Node) node.slots[index] : null;
+            child = put(previous, shift - BITS, key, value, added);
+            if (child == previous) {
+                return node;
+            }
+        }
+        if (present) {
+            Object[] slots = node.slots.clone();
+            slots[index] = child;
+            return new Node(bitmap, slots);
+        }
+        int length = node != null ? node.slots.length : 0;
+        Object[] slots = new Object[length + 1];
+        if (node != null) {
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            System.arraycopy(node.slots, index, slots, index + 1, length - index);
+        }
+        slots[index] = child;
+        return new Node(bitmap | bit, slots);
+    }
+
+    // Возвращает тот же узел, если ключа нет, и null, если узел опустел
+    private static Node remove(Node node, int shift, int key) {
+        if (node == null) {
+            return null;
+        }
+        int bit = 1 << ((key >>> shift) & MASK);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if (shift > 0) {
+            Node child = (Node) node.slots[index];
+            Node updated = remove(child, shift - BITS, key);
+            if (updated == child) {
+                return node;
+            }
+            if (updated != null) {
+                Object[] slots = node.slots.clone();
+                slots[index] = updated;
+                return new Node(node.bitmap, slots);
+            }
+        }
+        if (node.bitmap == bit) {
+            return null;
+        }
+        Object[] slots = new Object[node.slots.length - 1];
+        System.arraycopy(node.slots, 0, slots, 0, index);
+        System.arraycopy(node.slots, index + 1, slots, index, slots.length - index);
+        return new Node(node.bitmap & ~bit, slots);
+    }
+
+    private static final class Node {
+        final int bitmap;
+        final Object[] slots; // дочерние узлы, на последнем уровне — значения
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import task.Task;
+
+import java.time.LocalDateTime;
+
+// Задача для автоматического планирования (см. TaskManager.scheduleTasks):
+// задача или подзадача с продолжительностью, но без времени начала,
+// необязательный крайний срок окончания и приоритет (больше — важнее)
+public class ScheduleRequest {
+    private final Task task;
+    private final LocalDateTime deadline;
+    private final int priority;
+
+    public ScheduleRequest(Task task) {
+        this(task, null, 0);
+    }
+
+    public ScheduleRequest(Task task, LocalDateTime deadline, int priority) {
+        this.task = task;
+        this.deadline = deadline;
+        this.priority = priority;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public LocalDateTime getDeadline() {
+        return deadline;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+}
@@ -0,0 +1,5 @@
+// Формат файла снимка
+public enum SnapshotFormat {
+    CSV,    // Текстовый CSV с заголовком
+    BINARY  // Компактный двоичный формат (см. BinarySnapshotFormat)
+}
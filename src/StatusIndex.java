@@ -0,0 +1,57 @@
+import task.IntList;
+import task.Status;
+
+import java.util.EnumMap;
+
+// Вторичный индекс id по статусу: для каждого статуса — упорядоченный набор id в порядке индексации.
+// Статус запоминается при добавлении, поэтому перенос и удаление работают, даже если задачу уже
+// изменили на месте. Все операции и подсчёт по статусу — O(1)
+public class StatusIndex {
+    private final IntObjectMap<Status> statuses = new IntObjectMap<>();
+    private final EnumMap<Status, IntList> ids = new EnumMap<>(Status.class);
+
+    public StatusIndex() {
+        for (Status status : Status.values()) {
+            ids.put(status, new IntList());
+        }
+    }
+
+    // Добавление id или перенос на новый статус
+    public void put(int id, Status status) {
+        Status previous = statuses.put(id, status);
+        if (previous == status) {
+            return;
+        }
+        if (previous != null) {
+            ids.get(previous).remove(id);
+        }
+        ids.get(status).add(id);
+    }
+
+    public void remove(int id) {
+        Status previous = statuses.remove(id);
+        if (previous != null) {
+            ids.get(previous).remove(id);
+        }
+    }
+
+    public void clear() {
+        statuses.clear();
+        for (IntList list : ids.values()) {
+            list.clear();
+        }
+    }
+
+    public int count(Status status) {
+        return ids.get(status).size();
+    }
+
+    public boolean isEmpty() {
+        return statuses.isEmpty();
+    }
+
+    // Живой набор id, менять его нельзя
+    public IntList ids(Status status) {
+        return ids.get(status);
+    }
+}
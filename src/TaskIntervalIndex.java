@@ -0,0 +1,336 @@
+import task.Task;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Индекс интервалов задач: AVL-дерево по (startTime, id) с максимальным окончанием в поддереве
+public class TaskIntervalIndex {
+    private final IntObjectMap<Node> nodes = new IntObjectMap<>();
+    private Node root;
+    private int modCount; // изменения индекса, для обнаружения изменений во время обхода
+
+    // Добавление или замена задачи
+    public void add(Task task) {
+        remove(task.getId());
+        if (!isIndexable(task)) {
+            return;
+        }
+        Node node = new Node(task);
+        root = insert(root, node);
+        nodes.put(node.id, node);
+        modCount++;
+    }
+
+    public void remove(int id) {
+        Node node = nodes.remove(id);
+        if (node != null) {
+            root = delete(root, node.start, node.id);
+            modCount++;
+        }
+    }
+
+    public void clear() {
+        nodes.clear();
+        root = null;
+        modCount++;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    // Построение индекса за линейное время из задач, отсортированных по (startTime, id) без повторов id
+    public void build(List<? extends Task> sorted) {
+        clear();
+        Node[] indexed = new Node[sorted.size()];
+        int count = 0;
+        for (Task task : sorted) {
+            if (isIndexable(task) && !nodes.containsKey(task.getId())) {
+                Node node = new Node(task);
+                indexed[count++] = node;
+                nodes.put(node.id, node);
+            }
+        }
+        root = build(indexed, 0, count);
+    }
+
+    // Есть ли задача, кроме excludeId, пересекающаяся с [start, end) по правилу isTasksIntersect
+    public boolean overlapsAny(LocalDateTime start, LocalDateTime end, int excludeId) {
+        LocalDateTime before = end.isBefore(start) ? end : start;
+        if (find(root, null, before, start, excludeId)) {
+            return true;
+        }
+        return end.isAfter(start) && find(root, start, end, start, excludeId);
+    }
+
+    // Задачи, начинающиеся в [from, to) или идущие в момент from; обход ленивый, по времени начала
+    public Iterable<Task> range(LocalDateTime from, LocalDateTime to) {
+        return () -> new QueryIterator(from, to, false);
+    }
+
+    // Число задач с началом в [from, to) за O(log n), оценка для планировщика запросов
+    public int countStarting(LocalDateTime from, LocalDateTime to) {
+        return countBefore(to) - countBefore(from);
+    }
+
+    private int countBefore(LocalDateTime time) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.start.isBefore(time)) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    // Задачи, идущие в момент time: начались не позже него и закончились позже
+    public Iterable<Task> at(LocalDateTime time) {
+        return () -> new QueryIterator(time, time, true);
+    }
+
+    private static boolean isIndexable(Task task) {
+        return task.getStartTime() != null;
+    }
+
+    // Задача с началом строго между from и to (from == null — без границы) и концом после minEnd
+    private static boolean find(Node node, LocalDateTime from, LocalDateTime to, LocalDateTime minEnd,
+                                int excludeId) {
+        if (node == null || !node.maxEnd.isAfter(minEnd)) {
+            return false;
+        }
+        boolean afterFrom = from == null || node.start.isAfter(from);
+        boolean beforeTo = node.start.isBefore(to);
+        if (afterFrom && beforeTo && node.hasDuration && node.end.isAfter(minEnd) && node.id != excludeId) {
+            return true;
+        }
+        // Слева только задачи, начавшиеся не позже текущей, справа — не раньше
+        if (afterFrom && find(node.left, from, to, minEnd, excludeId)) {
+            return true;
+        }
+        return beforeTo && find(node.right, from, to, minEnd, excludeId);
+    }
+
+    private static int compare(LocalDateTime start, int id, Node node) {
+        int result = start.compareTo(node.start);
+        return result != 0 ? result : Integer.compare(id, node.id);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return balance(node);
+    }
+
+    private static Node delete(Node node, LocalDateTime start, int id) {
+        if (node == null) {
+            return null;
+        }
+        int result = compare(start, id, node);
+        if (result < 0) {
+            node.left = delete(node.left, start, id);
+        } else if (result > 0) {
+            node.right = delete(node.right, start, id);
+        } else {
+            if (node.left == null) return node.right;
+            if (node.right == null) return node.left;
+            // Узел заменяется наименьшим из правого поддерева
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteMin(node.right);
+            successor.left = node.left;
+            return balance(successor);
+        }
+        return balance(node);
+    }
+
+    private static Node deleteMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteMin(node.left);
+        return balance(node);
+    }
+
+    private static Node build(Node[] sorted, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        Node node = sorted[middle];
+        node.left = build(sorted, from, middle);
+        node.right = build(sorted, middle + 1, to);
+        update(node);
+        return node;
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        node.size = size(node.left) + size(node.right) + 1;
+        LocalDateTime maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd.isAfter(maxEnd)) maxEnd = node.left.maxEnd;
+        if (node.right != null && node.right.maxEnd.isAfter(maxEnd)) maxEnd = node.right.maxEnd;
+        node.maxEnd = maxEnd;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    // Обход в порядке начала с отсечением поддеревьев без подходящих задач, O(log n) на задачу
+    private class QueryIterator implements Iterator<Task> {
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        private final boolean point;
+        private final int expectedModCount = modCount;
+        private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+        private Node next;
+
+        QueryIterator(LocalDateTime from, LocalDateTime to, boolean point) {
+            this.from = from;
+            this.to = to;
+            this.point = point;
+            descend(root, null, null);
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Task next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Task task = next.task;
+            advance();
+            return task;
+        }
+
+        private void advance() {
+            next = null;
+            while (!stack.isEmpty()) {
+                Frame frame = stack.pop();
+                descend(frame.node.right, frame.node.start, frame.hi);
+                if (matches(frame.node)) {
+                    next = frame.node;
+                    return;
+                }
+            }
+        }
+
+        private void descend(Node node, LocalDateTime lo, LocalDateTime hi) {
+            while (node != null && !skip(node, lo, hi)) {
+                stack.push(new Frame(node, hi));
+                hi = node.start;
+                node = node.left;
+            }
+        }
+
+        private boolean skip(Node node, LocalDateTime lo, LocalDateTime hi) {
+            if (point) {
+                return lo != null && lo.isAfter(to) || !node.maxEnd.isAfter(from);
+            }
+            return lo != null && !lo.isBefore(to) || !node.maxEnd.isAfter(from) && hi != null && hi.isBefore(from);
+        }
+
+        private boolean matches(Node node) {
+            if (point) {
+                return !node.start.isAfter(to) && node.end.isAfter(from);
+            }
+            return node.start.isBefore(to) && (!node.start.isBefore(from) || node.end.isAfter(from));
+        }
+    }
+
+    private static class Frame {
+        final Node node;
+        final LocalDateTime hi; // верхняя граница начала для правого поддерева
+
+        Frame(Node node, LocalDateTime hi) {
+            this.node = node;
+            this.hi = hi;
+        }
+    }
+
+    private static class Node {
+        final int id;
+        final Task task;
+        final LocalDateTime start;
+        final LocalDateTime end; // для задачи без продолжительности совпадает с началом
+        final boolean hasDuration;
+        LocalDateTime maxEnd; // наибольшее окончание в поддереве
+        int height = 1;
+        int size = 1; // число узлов в поддереве
+        Node left;
+        Node right;
+
+        Node(Task task) {
+            this.id = task.getId();
+            this.task = task;
+            this.start = task.getStartTime();
+            this.hasDuration = task.getDuration() != null;
+            this.end = hasDuration ? task.getEndTime() : start;
+            this.maxEnd = end;
+        }
+    }
+}
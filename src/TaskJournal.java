@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Журнал изменений: на каждую мутацию в конец файла дописывается одна запись.
+// Формат записи: CRC32 (8 hex-символов), пробел, тело записи, перевод строки.
+// Запись без перевода строки или с неверной контрольной суммой считается оборванной:
+// чтение останавливается на ней, всё что дальше игнорируется.
+// Активный файл можно отложить в сегмент <journal>.<номер> (rotate), чтобы писать снимок,
+// не останавливая запись новых изменений; сегменты проигрываются перед активным файлом.
+public class TaskJournal implements AutoCloseable {
+    private static final int CRC_LENGTH = 8;
+
+    private final Path path;
+    private FileChannel channel;
+    private long records;
+    private long bytes;
+
+    public TaskJournal(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Количество записей в журнале с момента последнего сброса
+    public long getRecords() {
+        return records;
+    }
+
+    // Размер журнала в байтах
+    public long getBytes() {
+        return bytes;
+    }
+
+    // Дописывание одной записи в конец журнала
+    public void append(String record) {
+        byte[] body = record.getBytes(StandardCharsets.UTF_8);
+        append(body, 0, body.length);
+    }
+
+    // Дописывание записи из части байтового буфера (UTF-8, без перевода строки)
+    public void append(byte[] body, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(body, offset, length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(CRC_LENGTH + 1 + length + 1);
+        buffer.put(toHex(crc.getValue()));
+        buffer.put((byte) ' ');
+        buffer.put(body, offset, length);
+        buffer.put((byte) '\n');
+        buffer.flip();
+
+        try {
+            FileChannel out = channel();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи в журнал", e);
+        }
+        records++;
+        bytes += CRC_LENGTH + 1 + length + 1;
+    }
+
+    // Дописывание нескольких записей одной операцией записи
+    public void append(List<byte[]> bodies) {
+        int size = 0;
+        for (byte[] body : bodies) {
+            size += CRC_LENGTH + 1 + body.length + 1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (byte[] body : bodies) {
+            crc.reset();
+            crc.update(body, 0, body.length);
+            buffer.put(toHex(crc.getValue()));
+            buffer.put((byte) ' ');
+            buffer.put(body);
+            buffer.put((byte) '\n');
+        }
+        buffer.flip();
+
+        try {
+            FileChannel out = channel();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи в журнал", e);
+        }
+        records += bodies.size();
+        bytes += size;
+    }
+
+    // Чтение всех целых записей отложенных сегментов и активного файла
+    public List<String> readAll() {
+        List<String> result = new ArrayList<>();
+        for (long segment : segments()) {
+            readFile(segmentPath(segment), result);
+        }
+        int before = result.size();
+        bytes = readFile(path, result);
+        records = result.size() - before;
+        return result;
+    }
+
+    // Откладывание активного файла в сегмент. Возвращает номер сегмента,
+    // который можно удалить после записи снимка, включающего все его записи
+    public long rotate() {
+        close();
+        List<Long> existing = segments();
+        long segment = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        try {
+            if (Files.exists(path)) {
+                Files.move(path, segmentPath(segment));
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка переключения журнала", e);
+        }
+        records = 0;
+        bytes = 0;
+        return segment;
+    }
+
+    // Удаление сегментов, уже перенесённых в снимок
+    public void deleteSegmentsUpTo(long segment) {
+        try {
+            for (long existing : segments()) {
+                if (existing <= segment) {
+                    Files.deleteIfExists(segmentPath(existing));
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка удаления сегмента журнала", e);
+        }
+    }
+
+    // Полный сброс: удаление сегментов и очистка активного файла
+    public void reset() {
+        deleteSegmentsUpTo(Long.MAX_VALUE);
+        truncate();
+    }
+
+    // Чтение целых записей одного файла. Оборванный хвост отрезается,
+    // чтобы следующие записи не оказались после мусора. Возвращает размер целой части
+    private long readFile(Path file, List<String> result) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения журнала", e);
+        }
+
+        int position = 0;
+        while (position < data.length) {
+            int end = position;
+            while (end < data.length && data[end] != '\n') {
+                end++;
+            }
+            if (end == data.length) {
+                break; // Запись без перевода строки — запись была прервана
+            }
+            String record = decode(data, position, end);
+            if (record == null) {
+                break;
+            }
+            result.add(record);
+            position = end + 1;
+        }
+
+        if (position < data.length) {
+            truncateTo(file, position);
+        }
+        return position;
+    }
+
+    // Сброс журнала после записи полного снимка
+    public void truncate() {
+        truncateTo(path, 0);
+        records = 0;
+        bytes = 0;
+    }
+
+    // Принудительная запись журнала на диск
+    public void sync() {
+        if (channel == null) return;
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка синхронизации журнала", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка закрытия журнала", e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private Path segmentPath(long segment) {
+        return path.resolveSibling(path.getFileName() + "." + segment);
+    }
+
+    // Номера существующих сегментов по возрастанию
+    private List<Long> segments() {
+        List<Long> result = new ArrayList<>();
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return result;
+        }
+        String prefix = path.getFileName() + ".";
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix))
+                    .map(name -> name.substring(prefix.length()))
+                    .filter(suffix -> !suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit))
+                    .map(Long::parseLong)
+                    .sorted()
+                    .forEach(result::add);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения каталога журнала", e);
+        }
+        return result;
+    }
+
+    private void truncateTo(Path file, long size) {
+        try {
+            if (channel != null && file.equals(path)) {
+                channel.truncate(size);
+            } else if (Files.exists(file)) {
+                try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    out.truncate(size);
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сброса журнала", e);
+        }
+    }
+
+    // Проверка контрольной суммы и выделение тела записи
+    private static String decode(byte[] data, int start, int end) {
+        if (end - start < CRC_LENGTH + 1 || data[start + CRC_LENGTH] != ' ') {
+            return null;
+        }
+        long expected = 0;
+        for (int i = start; i < start + CRC_LENGTH; i++) {
+            int digit = Character.digit(data[i], 16);
+            if (digit < 0) return null;
+            expected = (expected << 4) | digit;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, start + CRC_LENGTH + 1, end - start - CRC_LENGTH - 1);
+        if (crc.getValue() != expected) {
+            return null;
+        }
+        return new String(data, start + CRC_LENGTH + 1, end - start - CRC_LENGTH - 1, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] toHex(long value) {
+        byte[] hex = new byte[CRC_LENGTH];
+        for (int i = CRC_LENGTH - 1; i >= 0; i--) {
+            hex[i] = (byte) Character.forDigit((int) (value & 0xF), 16);
+            value >>>= 4;
+        }
+        return hex;
+    }
+}
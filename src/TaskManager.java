@@ -1,10 +1,15 @@
 import task.Epic;
+import task.Status;
 import task.Subtask;
 import task.Task;
+import task.Type;
 
-import java.util.ArrayList;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public interface TaskManager {
     //Создание задачи
@@ -34,17 +39,25 @@ public interface TaskManager {
     //Получение подзадачи по id
     Subtask getSubtaskById(int id);
 
-    //Печать задач
-    ArrayList<Task> getTasks();
+    //Печать задач.
+    //Списки на чтение — неизменяемые снимки, повторный вызов без изменений менеджера возвращает тот же снимок
+    List<Task> getTasks();
 
     //Печать эпиков
-    ArrayList<Epic> getEpics();
+    List<Epic> getEpics();
 
     //Печать подзадач
-    ArrayList<Subtask> getSubtasks();
+    List<Subtask> getSubtasks();
+
+    //Страницы тех же снимков: не больше limit элементов начиная с offset
+    List<Task> getTasks(int offset, int limit);
+
+    List<Epic> getEpics(int offset, int limit);
+
+    List<Subtask> getSubtasks(int offset, int limit);
 
     //Получение списка всех подзадач определённого эпика по id
-    ArrayList<Subtask> printArrayIdSubtask(int idEpic);
+    List<Subtask> printArrayIdSubtask(int idEpic);
 
     //Удаление задач по ID
     void deleteTask(int id);
@@ -67,12 +80,76 @@ public interface TaskManager {
     //Получение истории просмотра всех задач
     List<Task> getHistory();
 
-    //Получение списка задач, отсортированных по приоритету (startTime)
+    //Получение списка задач, отсортированных по приоритету (startTime), в виде неизменяемого снимка
     Set<Task> getPrioritizedTasks();
 
+    //Страница приоритетного списка
+    List<Task> getPrioritizedTasks(int offset, int limit);
+
+    //Продолжение приоритетного списка после задачи с данными временем начала и id (курсор последней
+    //полученной задачи). В отличие от страниц не сбивается, если между запросами задачи добавили или удалили
+    List<Task> getPrioritizedTasksAfter(LocalDateTime startTime, int id, int limit);
+
+    //Задачи, эпики и подзадачи с данным статусом по вторичному индексу, без просмотра остальных
+    List<Task> getTasksByStatus(Status status);
+
+    List<Epic> getEpicsByStatus(Status status);
+
+    List<Subtask> getSubtasksByStatus(Status status);
+
+    //Подзадачи эпика с данным статусом
+    List<Subtask> getEpicSubtasksByStatus(int idEpic, Status status);
+
+    //Поиск задач, эпиков и подзадач по словам названия и описания, лучшие совпадения первыми.
+    //Слово с '*' на конце ищется как префикс; matchAll — нужны все слова, иначе хотя бы одно
+    List<Task> searchTasks(String query, boolean matchAll);
+
+    //Число задач данного типа со статусом status за O(1)
+    int countByStatus(Type type, Status status);
+
+    //Выборка по составному запросу: источник выбирается по самому избирательному индексу,
+    //обход ленивый, с учётом смещения и лимита. Порядок задаёт выбранный источник (см. explain)
+    Iterable<Task> query(TaskQuery query);
+
+    //План выполнения запроса: выбранный источник с оценкой, фильтр и рассмотренные варианты
+    String explain(TaskQuery query);
+
     //Проверка пересечения двух задач по времени
     boolean isTasksIntersect(Task task1, Task task2);
 
     //Проверка пересечения задачи с любой другой задачей в менеджере
     boolean isTaskIntersectWithAny(Task task);
+
+    //Задачи и подзадачи, запланированные в интервале [from, to): начинаются в нём или идут в момент from.
+    //Ленивое представление по индексу времени в порядке начала, без копирования всех задач
+    Iterable<Task> getTasksInRange(LocalDateTime from, LocalDateTime to);
+
+    //Задачи и подзадачи, выполняющиеся в момент time
+    Iterable<Task> getTasksAt(LocalDateTime time);
+
+    //Самое раннее начало не раньше from, с которого на duration не запланировано ни одной задачи
+    LocalDateTime findFreeSlot(LocalDateTime from, Duration duration);
+
+    //То же, но окно должно целиком помещаться в рабочие часы [workStart, workEnd) одного дня
+    LocalDateTime findFreeSlot(LocalDateTime from, Duration duration, LocalTime workStart, LocalTime workEnd);
+
+    //Массовое добавление задач: пересечения проверяются одним проходом по пакету, отсортированному
+    //по времени начала. Пересекающиеся задачи не добавляются и возвращаются, остальные добавляются одним пакетом
+    List<Task> addAllTasks(List<Task> tasks);
+
+    //Массовое добавление подзадач, эпики пересчитываются один раз на пакет
+    List<Subtask> addAllSubtasks(List<Subtask> subtasks);
+
+    //Автоматическое планирование задач и подзадач без времени начала начиная с from.
+    //Задачи с большим приоритетом начинаются раньше, при равном — с более ранним сроком.
+    //План применяется одним пакетом; возвращаются задачи, которые не успевают к своему сроку
+    List<Task> scheduleTasks(List<ScheduleRequest> requests, LocalDateTime from);
+
+    //Согласованный неизменяемый срез задач, эпиков и подзадач для долгих отчётов.
+    //Срез читается без блокировок и не меняется при последующих изменениях менеджера
+    TaskSnapshot snapshot();
+
+    //Пакетное изменение: операции применяются вместе или, при исключении, не применяется ни одна.
+    //Статус и время затронутых эпиков пересчитываются один раз в конце пакета
+    void batch(Consumer<TaskManager> operations);
 }
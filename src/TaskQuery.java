@@ -0,0 +1,117 @@
+import task.Status;
+import task.Type;
+
+import java.time.LocalDateTime;
+
+// Запрос к менеджеру (см. TaskManager.query): условия объединяются через И,
+// незаданные условия не ограничивают выборку.
+// Пример: new TaskQuery().type(Type.SUBTASK).status(Status.DONE).epic(idEpic).limit(20)
+public class TaskQuery {
+    private Integer id;
+    private Type type;
+    private Status status;
+    private Integer epicId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private String text;
+    private boolean textMatchAll = true;
+    private int offset;
+    private int limit = Integer.MAX_VALUE;
+
+    public TaskQuery id(int id) {
+        this.id = id;
+        return this;
+    }
+
+    public TaskQuery type(Type type) {
+        this.type = type;
+        return this;
+    }
+
+    public TaskQuery status(Status status) {
+        this.status = status;
+        return this;
+    }
+
+    // Подзадачи данного эпика
+    public TaskQuery epic(int epicId) {
+        this.epicId = epicId;
+        return this;
+    }
+
+    // Запланированные в интервале [from, to): начинаются в нём или идут в момент from (как getTasksInRange)
+    public TaskQuery between(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("Некорректный интервал времени");
+        }
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    // Слова в названии или описании, как в searchTasks
+    public TaskQuery text(String text, boolean matchAll) {
+        if (text == null) {
+            throw new IllegalArgumentException("Запрос не может быть null");
+        }
+        this.text = text;
+        this.textMatchAll = matchAll;
+        return this;
+    }
+
+    public TaskQuery offset(int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Смещение не может быть отрицательным");
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    public TaskQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Размер выборки не может быть отрицательным");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Integer getEpicId() {
+        return epicId;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isTextMatchAll() {
+        return textMatchAll;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,147 @@
+import task.Epic;
+import task.Subtask;
+import task.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+// Согласованный срез менеджера на момент TaskManager.snapshot().
+// Хранит копии задач в неизменяемых картах, поэтому его можно читать из любого потока без блокировок
+// сколько угодно долго: последующие изменения менеджера его не затрагивают. Соседние версии делят
+// неизменённые узлы карт, а версия, которую больше никто не держит, собирается сборщиком мусора.
+// Объекты задач в срезе общие для нескольких версий, изменять их нельзя
+public final class TaskSnapshot {
+    private static final Comparator<Task> PRIORITY_ORDER = Comparator.comparing(Task::getStartTime)
+            .thenComparing(Task::getId);
+
+    private final long version;
+    private final PersistentIntMap<Task> tasks;
+    private final PersistentIntMap<Epic> epics;
+    private final PersistentIntMap<Subtask> subtasks;
+    private List<Task> prioritizedTasks; // строится при первом запросе
+
+    TaskSnapshot(long version, PersistentIntMap<Task> tasks, PersistentIntMap<Epic> epics,
+                 PersistentIntMap<Subtask> subtasks) {
+        this.version = version;
+        this.tasks = tasks;
+        this.epics = epics;
+        this.subtasks = subtasks;
+    }
+
+    // Номер версии: растёт с каждым срезом, в котором что-то изменилось
+    public long getVersion() {
+        return version;
+    }
+
+    public Task getTask(int id) {
+        return tasks.get(id);
+    }
+
+    public Epic getEpic(int id) {
+        return epics.get(id);
+    }
+
+    public Subtask getSubtask(int id) {
+        return subtasks.get(id);
+    }
+
+    // Обход по возрастанию id без копирования
+    public Iterable<Task> getTasks() {
+        return tasks;
+    }
+
+    public Iterable<Epic> getEpics() {
+        return epics;
+    }
+
+    public Iterable<Subtask> getSubtasks() {
+        return subtasks;
+    }
+
+    public int getTaskCount() {
+        return tasks.size();
+    }
+
+    public int getEpicCount() {
+        return epics.size();
+    }
+
+    public int getSubtaskCount() {
+        return subtasks.size();
+    }
+
+    // Подзадачи эпика в порядке добавления
+    public List<Subtask> getEpicSubtasks(int idEpic) {
+        Epic epic = epics.get(idEpic);
+        if (epic == null) {
+            return List.of();
+        }
+        List<Subtask> result = new ArrayList<>(epic.getSubtaskIds().size());
+        for (PrimitiveIterator.OfInt ids = epic.getSubtaskIds().iterator(); ids.hasNext(); ) {
+            Subtask subtask = subtasks.get(ids.nextInt());
+            if (subtask != null) {
+                result.add(subtask);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    // Задачи, подзадачи и эпики со временем начала, по приоритету как в getPrioritizedTasks
+    public synchronized List<Task> getPrioritizedTasks() {
+        if (prioritizedTasks == null) {
+            List<Task> timed = new ArrayList<>();
+            for (Task task : tasks) {
+                if (task.getStartTime() != null) timed.add(task);
+            }
+            for (Epic epic : epics) {
+                if (epic.getStartTime() != null) timed.add(epic);
+            }
+            for (Subtask subtask : subtasks) {
+                if (subtask.getStartTime() != null) timed.add(subtask);
+            }
+            timed.sort(PRIORITY_ORDER);
+            prioritizedTasks = Collections.unmodifiableList(timed);
+        }
+        return prioritizedTasks;
+    }
+
+    PersistentIntMap<Task> tasksMap() {
+        return tasks;
+    }
+
+    PersistentIntMap<Epic> epicsMap() {
+        return epics;
+    }
+
+    PersistentIntMap<Subtask> subtasksMap() {
+        return subtasks;
+    }
+
+    // Отдельная копия задачи для среза: менеджер и его пользователи меняют задачи на месте
+    static Task copyOf(Task task) {
+        if (task instanceof Epic) {
+            Epic epic = (Epic) task;
+            Epic copy = new Epic(epic.getName(), epic.getDescription(), epic.getStatus());
+            copy.setId(epic.getId());
+            copy.setSubtaskIds(epic.getSubtaskIds().copy());
+            copy.setTimeWindow(epic.getStartTime(), epic.getEndTime(), epic.getDuration());
+            return copy;
+        }
+        if (task instanceof Subtask) {
+            Subtask subtask = (Subtask) task;
+            Subtask copy = new Subtask(subtask.getName(), subtask.getDescription(), subtask.getStatus(),
+                    subtask.getIdEpic());
+            copy.setId(subtask.getId());
+            copy.setStartTime(subtask.getStartTime());
+            copy.setDuration(subtask.getDuration());
+            return copy;
+        }
+        Task copy = new Task(task.getName(), task.getDescription(), task.getStatus(), task.getDuration(),
+                task.getStartTime());
+        copy.setId(task.getId());
+        return copy;
+    }
+}
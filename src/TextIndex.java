@@ -0,0 +1,299 @@
+import task.Task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Обратный индекс по названию и описанию задач: термин -> отсортированный по id список задач
+public class TextIndex {
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+    private final IntObjectMap<Map<String, Integer>> documents = new IntObjectMap<>(); // термины задачи
+
+    // Добавление или замена задачи
+    public void add(Task task) {
+        remove(task.getId());
+        Map<String, Integer> terms = terms(task);
+        if (terms.isEmpty()) {
+            return;
+        }
+        documents.put(task.getId(), terms);
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), key -> new Postings()).insert(task.getId(), term.getValue());
+        }
+    }
+
+    public void remove(int id) {
+        Map<String, Integer> terms = documents.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Postings list = postings.get(term);
+            list.delete(id);
+            if (list.live == 0) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+        documents.clear();
+    }
+
+    // Построение с нуля: списки собираются без сортировки вставками и сортируются один раз
+    public void build(Collection<? extends Task> tasks) {
+        clear();
+        for (Task task : tasks) {
+            Map<String, Integer> terms = terms(task);
+            if (terms.isEmpty() || documents.containsKey(task.getId())) {
+                continue;
+            }
+            documents.put(task.getId(), terms);
+            for (Map.Entry<String, Integer> term : terms.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), key -> new Postings()).append(task.getId(), term.getValue());
+            }
+        }
+        for (Postings list : postings.values()) {
+            list.sort();
+        }
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    // Поиск по словам (слово* — префикс), matchAll — И, иначе ИЛИ; результат по убыванию tf * idf
+    public List<Integer> search(String query, boolean matchAll) {
+        List<Map<Integer, Double>> matches = new ArrayList<>();
+        for (Token token : parse(query)) {
+            matches.add(match(token.text, token.prefix));
+        }
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, Double> scores;
+        if (matchAll) {
+            // Пересечение начинается с самого короткого списка
+            matches.sort((a, b) -> Integer.compare(a.size(), b.size()));
+            scores = new HashMap<>(matches.get(0));
+            for (int i = 1; i < matches.size() && !scores.isEmpty(); i++) {
+                Map<Integer, Double> next = matches.get(i);
+                scores.keySet().retainAll(next.keySet());
+                scores.replaceAll((id, score) -> score + next.get(id));
+            }
+        } else {
+            scores = new HashMap<>();
+            for (Map<Integer, Double> match : matches) {
+                match.forEach((id, score) -> scores.merge(id, score, Double::sum));
+            }
+        }
+
+        List<Map.Entry<Integer, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((a, b) -> {
+            int byScore = Double.compare(b.getValue(), a.getValue());
+            return byScore != 0 ? byScore : Integer.compare(a.getKey(), b.getKey());
+        });
+        List<Integer> result = new ArrayList<>(ranked.size());
+        for (Map.Entry<Integer, Double> entry : ranked) {
+            result.add(entry.getKey());
+        }
+        return result;
+    }
+
+    // Оценка сверху без построения результата: для И — самый короткий список, для ИЛИ — сумма списков
+    public int estimate(String query, boolean matchAll) {
+        int estimate = matchAll ? Integer.MAX_VALUE : 0;
+        boolean any = false;
+        for (Token token : parse(query)) {
+            int count = 0;
+            for (Postings list : terms(token.text, token.prefix).values()) {
+                count += list.live;
+            }
+            estimate = matchAll ? Math.min(estimate, count) : estimate + count;
+            any = true;
+        }
+        return any ? Math.min(estimate, documents.size()) : 0;
+    }
+
+    // Проверка одной задачи по запомненным при индексации терминам, без обхода индекса
+    public boolean matches(int id, String query, boolean matchAll) {
+        Map<String, Integer> terms = documents.get(id);
+        List<Token> tokens = parse(query);
+        if (terms == null || tokens.isEmpty()) {
+            return false;
+        }
+        for (Token token : tokens) {
+            boolean found = terms.containsKey(token.text);
+            if (!found && token.prefix) {
+                for (String term : terms.keySet()) {
+                    if (term.startsWith(token.text)) {
+                        found = true;
+                        break;
+                    }
+                }
+            }
+            if (found != matchAll) {
+                return found;
+            }
+        }
+        return matchAll;
+    }
+
+    // Слова запроса; '*' делает префиксом последнее слово группы
+    private static List<Token> parse(String query) {
+        List<Token> result = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            boolean prefix = word.endsWith("*");
+            List<String> tokens = tokenize(prefix ? word.substring(0, word.length() - 1) : word);
+            for (int i = 0; i < tokens.size(); i++) {
+                result.add(new Token(tokens.get(i), prefix && i == tokens.size() - 1));
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Postings> terms(String token, boolean prefix) {
+        return prefix
+                ? postings.subMap(token, true, token + Character.MAX_VALUE, false)
+                : (postings.containsKey(token) ? Map.of(token, postings.get(token)) : Map.of());
+    }
+
+    // Веса задач, содержащих термин (или любой термин с этим префиксом)
+    private Map<Integer, Double> match(String token, boolean prefix) {
+        Map<Integer, Double> scores = new HashMap<>();
+        Map<String, Postings> terms = terms(token, prefix);
+        for (Postings list : terms.values()) {
+            double idf = Math.log(1.0 + (double) documents.size() / list.live);
+            for (int i = 0; i < list.size; i++) {
+                if (list.counts[i] > 0) {
+                    scores.merge(list.ids[i], list.counts[i] * idf, Double::sum);
+                }
+            }
+        }
+        return scores;
+    }
+
+    private static Map<String, Integer> terms(Task task) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        for (String text : new String[]{task.getName(), task.getDescription()}) {
+            if (text != null) {
+                for (String token : tokenize(text)) {
+                    terms.merge(token, 1, Integer::sum);
+                }
+            }
+        }
+        return terms;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static class Token {
+        final String text;
+        final boolean prefix;
+
+        Token(String text, boolean prefix) {
+            this.text = text;
+            this.prefix = prefix;
+        }
+    }
+
+    // Отсортированные по id задачи с числом вхождений термина, 0 — удалённая запись
+    private static class Postings {
+        int[] ids = new int[2];
+        int[] counts = new int[2];
+        int size; // занятая часть массивов, включая удалённые записи
+        int live; // записи без пометки
+
+        void append(int id, int count) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            ids[size] = id;
+            counts[size] = count;
+            size++;
+            live++;
+        }
+
+        void insert(int id, int count) {
+            if (size == 0 || ids[size - 1] < id) {
+                append(id, count);
+                return;
+            }
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                // Запись той же задачи: снимаем пометку удаления
+                if (counts[index] == 0) {
+                    live++;
+                }
+                counts[index] = count;
+                return;
+            }
+            index = -index - 1;
+            append(0, 0);
+            System.arraycopy(ids, index, ids, index + 1, size - 1 - index);
+            System.arraycopy(counts, index, counts, index + 1, size - 1 - index);
+            ids[index] = id;
+            counts[index] = count;
+        }
+
+        void delete(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0 || counts[index] == 0) {
+                return;
+            }
+            counts[index] = 0;
+            live--;
+            if (live < size / 2) {
+                compact();
+            }
+        }
+
+        // Удаление помеченных записей одним проходом
+        private void compact() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (counts[i] > 0) {
+                    ids[kept] = ids[i];
+                    counts[kept] = counts[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+
+        // Сортировка после массового построения: пары (id, число) упорядочиваются по id
+        void sort() {
+            long[] pairs = new long[size];
+            for (int i = 0; i < size; i++) {
+                pairs[i] = ((long) ids[i] << 32) | (counts[i] & 0xFFFFFFFFL);
+            }
+            Arrays.sort(pairs);
+            for (int i = 0; i < size; i++) {
+                ids[i] = (int) (pairs[i] >> 32);
+                counts[i] = (int) pairs[i];
+            }
+        }
+    }
+}
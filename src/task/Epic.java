@@ -3,11 +3,15 @@ package task;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
 
 public class Epic extends Task {
-    private ArrayList<Integer> idSubtaskArray = new ArrayList<>(); // список ID подзадач
+    private IntList subtaskIds = new IntList(); // ID подзадач в порядке добавления
+    private final int[] statusCounts = new int[Status.values().length]; // подзадачи по статусам, ведёт менеджер
+    private LocalDateTime startTime; // окно эпика по подзадачам, ведёт менеджер
     private LocalDateTime endTime;
+    private Duration duration;
 
     public Epic(String name, String description, Status status) {
         super(name, description, status);
@@ -15,28 +19,68 @@ public class Epic extends Task {
     }
 
     public void addIdSubtask(int idSubtask) {
-        idSubtaskArray.add(idSubtask);
+        subtaskIds.add(idSubtask);
     }
 
+    // ID подзадач без упаковки, живой набор эпика
+    public IntList getSubtaskIds() {
+        return subtaskIds;
+    }
+
+    public void setSubtaskIds(IntList subtaskIds) {
+        this.subtaskIds = subtaskIds;
+    }
+
+    // Копия списка ID подзадач
     public ArrayList<Integer> getIdSubtaskArray() {
+        ArrayList<Integer> idSubtaskArray = new ArrayList<>(subtaskIds.size());
+        subtaskIds.forEach(idSubtaskArray::add);
         return idSubtaskArray;
     }
 
     public void setIdSubtaskArray(ArrayList<Integer> idSubtaskArray) {
-        this.idSubtaskArray = idSubtaskArray;
+        IntList ids = new IntList();
+        for (int idSubtask : idSubtaskArray) {
+            ids.add(idSubtask);
+        }
+        this.subtaskIds = ids;
     }
 
     public void clearSubtaskArray() {
-        idSubtaskArray.clear();
+        subtaskIds.clear();
+        clearSubtaskCounts();
+    }
+
+    public void countSubtask(Status status) {
+        statusCounts[status.ordinal()]++;
+    }
+
+    public void uncountSubtask(Status status) {
+        statusCounts[status.ordinal()]--;
     }
 
-    public void deleteEpicSubtask(Integer idSubtask) {
-        idSubtaskArray.remove(idSubtask);
+    public void clearSubtaskCounts() {
+        Arrays.fill(statusCounts, 0);
+    }
+
+    public int getSubtaskCount(Status status) {
+        return statusCounts[status.ordinal()];
+    }
+
+    public void deleteEpicSubtask(int idSubtask) {
+        subtaskIds.remove(idSubtask);
+    }
+
+    // Начало, окончание и суммарная продолжительность подзадач
+    public void setTimeWindow(LocalDateTime startTime, LocalDateTime endTime, Duration duration) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.duration = duration;
     }
 
     @Override
     public Duration getDuration() {
-        return null; // Продолжительность рассчитывается на основе подзадач
+        return duration; // Продолжительность рассчитывается на основе подзадач
     }
 
     @Override
@@ -46,7 +90,7 @@ public class Epic extends Task {
 
     @Override
     public LocalDateTime getStartTime() {
-        return null; // Время начала рассчитывается на основе подзадач
+        return startTime; // Время начала рассчитывается на основе подзадач
     }
 
     @Override
@@ -69,11 +113,11 @@ public class Epic extends Task {
         if (o == null || getClass() != o.getClass()) return false;
         if (!super.equals(o)) return false;
         Epic epic = (Epic) o;
-        return Objects.equals(idSubtaskArray, epic.idSubtaskArray) && Objects.equals(endTime, epic.endTime);
+        return Objects.equals(subtaskIds, epic.subtaskIds) && Objects.equals(endTime, epic.endTime);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), idSubtaskArray, endTime);
+        return Objects.hash(super.hashCode(), subtaskIds, endTime);
     }
 }
@@ -0,0 +1,236 @@
+package task;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+// Упорядоченный набор id без упаковки в Integer (подзадачи эпика).
+// Значения лежат в массиве int в порядке добавления, позиция каждого id — в открытой хэш-таблице,
+// поэтому contains и remove работают за O(1). Удалённая ячейка помечается и пропускается при обходе,
+// массив уплотняется, когда помеченных становится больше половины (O(1) амортизированно).
+// Повторное добавление уже имеющегося id ничего не меняет.
+public class IntList {
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final int FREE = -1; // свободная ячейка хэш-таблицы
+
+    private int[] values; // id в порядке добавления, удалённые ячейки помечены в removed
+    private boolean[] removed;
+    private int length; // занятая часть массива values, включая удалённые ячейки
+    private int size;
+    private int[] slots; // хэш-таблица: позиция id в values или FREE
+    private int mask;
+
+    public IntList() {
+        values = new int[DEFAULT_CAPACITY];
+        removed = new boolean[DEFAULT_CAPACITY];
+        allocateSlots(DEFAULT_CAPACITY * 2);
+    }
+
+    public boolean add(int value) {
+        if (indexOf(value) >= 0) {
+            return false;
+        }
+        if (length == values.length) {
+            if (size < length / 2) {
+                compact();
+            } else {
+                values = Arrays.copyOf(values, length * 2);
+                removed = Arrays.copyOf(removed, length * 2);
+            }
+        }
+        values[length] = value;
+        removed[length] = false;
+        if ((length + 1) * 2 > slots.length) {
+            allocateSlots(slots.length * 2);
+            rehash();
+        }
+        insertSlot(value, length);
+        length++;
+        size++;
+        return true;
+    }
+
+    public boolean remove(int value) {
+        int slot = slotOf(value);
+        if (slot < 0) {
+            return false;
+        }
+        removed[slots[slot]] = true;
+        deleteSlot(slot);
+        size--;
+        if (size == 0) {
+            clear();
+        } else if (length - size > size && length > DEFAULT_CAPACITY) {
+            compact();
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        length = 0;
+        size = 0;
+        Arrays.fill(slots, FREE);
+    }
+
+    // Обход без упаковки в порядке добавления
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < length; i++) {
+            if (!removed[i]) {
+                action.accept(values[i]);
+            }
+        }
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index = skipRemoved(0);
+
+            @Override
+            public boolean hasNext() {
+                return index < length;
+            }
+
+            @Override
+            public int nextInt() {
+                if (index >= length) {
+                    throw new NoSuchElementException();
+                }
+                int value = values[index];
+                index = skipRemoved(index + 1);
+                return value;
+            }
+        };
+    }
+
+    public int[] toArray() {
+        int[] result = new int[size];
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            if (!removed[i]) {
+                result[position++] = values[i];
+            }
+        }
+        return result;
+    }
+
+    public IntList copy() {
+        IntList copy = new IntList();
+        forEach(copy::add);
+        return copy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Arrays.equals(toArray(), ((IntList) o).toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            if (!removed[i]) {
+                hash = 31 * hash + values[i];
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private int skipRemoved(int index) {
+        while (index < length && removed[index]) {
+            index++;
+        }
+        return index;
+    }
+
+    private int indexOf(int value) {
+        int slot = slotOf(value);
+        return slot >= 0 ? slots[slot] : -1;
+    }
+
+    private int slotOf(int value) {
+        int slot = hash(value);
+        while (slots[slot] != FREE) {
+            if (values[slots[slot]] == value) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertSlot(int value, int index) {
+        int slot = hash(value);
+        while (slots[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = index;
+    }
+
+    // Удаление из хэш-таблицы со сдвигом следующих ячеек цепочки назад
+    private void deleteSlot(int slot) {
+        int gap = slot;
+        int next = (slot + 1) & mask;
+        while (slots[next] != FREE) {
+            int home = hash(values[slots[next]]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                slots[gap] = slots[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots[gap] = FREE;
+    }
+
+    // Удаление помеченных ячеек с сохранением порядка
+    private void compact() {
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            if (!removed[i]) {
+                values[position++] = values[i];
+            }
+        }
+        Arrays.fill(removed, 0, length, false);
+        length = position;
+        rehash();
+    }
+
+    private void rehash() {
+        Arrays.fill(slots, FREE);
+        for (int i = 0; i < length; i++) {
+            if (!removed[i]) {
+                insertSlot(values[i], i);
+            }
+        }
+    }
+
+    private void allocateSlots(int capacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, FREE);
+        mask = capacity - 1;
+    }
+
+    private int hash(int value) {
+        int hash = value * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,249 @@
+import org.junit.jupiter.api.Test;
+import task.Epic;
+import task.Status;
+import task.Subtask;
+import task.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentTaskManagerTest {
+
+    @Test
+    void shouldKeepInvariantsUnderConcurrentWrites() throws Exception {
+        ConcurrentTaskManager manager = new ConcurrentTaskManager();
+        Epic epic = new Epic("Эпик", "", Status.NEW);
+        manager.addNewEpic(epic);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        int writers = 4;
+        int perWriter = 500;
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int seed = w;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < perWriter; i++) {
+                    // Потоки претендуют на одни и те же интервалы: добавить удаётся только одну задачу на интервал
+                    LocalDateTime start = base.plusHours(random.nextInt(perWriter));
+                    Task task = random.nextBoolean()
+                            ? new Task("Задача", "", Status.NEW)
+                            : new Subtask("Подзадача", "", Status.values()[random.nextInt(3)], epic.getId());
+                    task.setStartTime(start);
+                    task.setDuration(Duration.ofMinutes(30));
+                    try {
+                        if (task instanceof Subtask) {
+                            manager.addNewSubtask((Subtask) task);
+                        } else {
+                            manager.addNewTask(task);
+                        }
+                    } catch (IllegalArgumentException ignored) {
+                        // пересечение с задачей другого потока
+                    }
+                }
+            }));
+        }
+        // Читатели обходят снимки во время записи
+        for (int r = 0; r < 2; r++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    LocalDateTime previous = null;
+                    for (Task task : manager.getPrioritizedTasks()) {
+                        assertTrue(previous == null || !task.getStartTime().isBefore(previous));
+                        previous = task.getStartTime();
+                    }
+                    manager.getTasks().size();
+                    manager.getTaskById(1 + i % 50);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Все id различны, задачи не пересекаются, статус эпика совпадает с его подзадачами
+        List<Task> all = new ArrayList<>(manager.getTasks());
+        all.addAll(manager.getSubtasks());
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < all.size(); i++) {
+            assertTrue(ids.add(all.get(i).getId()));
+            for (int j = i + 1; j < all.size(); j++) {
+                assertFalse(manager.isTasksIntersect(all.get(i), all.get(j)));
+            }
+        }
+        assertEquals(all.size(), manager.getPrioritizedTasks().size() - 1); // кроме эпика
+
+        boolean hasNew = false;
+        boolean hasDone = false;
+        for (Subtask subtask : manager.printArrayIdSubtask(epic.getId())) {
+            hasNew |= subtask.getStatus() == Status.NEW;
+            hasDone |= subtask.getStatus() == Status.DONE;
+        }
+        Status expected = hasDone && !hasNew ? Status.DONE : hasNew && !hasDone ? Status.NEW : Status.IN_PROGRESS;
+        assertEquals(expected, manager.getEpicById(epic.getId()).getStatus());
+    }
+
+    @Test
+    void shouldRollUpEachEpicBeforeWriterReturns() throws Exception {
+        ConcurrentTaskManager manager = new ConcurrentTaskManager();
+        int writers = 4;
+        List<Epic> epics = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            Epic epic = new Epic("Эпик " + w, "", Status.NEW);
+            manager.addNewEpic(epic);
+            epics.add(epic);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        List<Future<?>> futures = new ArrayList<>();
+        AtomicBoolean done = new AtomicBoolean();
+        // Читатель не должен увидеть подзадачу, пока статус её эпика её не учитывает
+        Future<?> reader = executor.submit(() -> {
+            while (!done.get()) {
+                TaskSnapshot snapshot = manager.snapshot();
+                for (Epic epic : snapshot.getEpics()) {
+                    List<Subtask> subtasks = snapshot.getEpicSubtasks(epic.getId());
+                    Status expected = subtasks.isEmpty() ? Status.NEW
+                            : subtasks.size() == 1 ? subtasks.get(0).getStatus() : Status.IN_PROGRESS;
+                    assertEquals(expected, epic.getStatus());
+                }
+            }
+        });
+        for (int w = 0; w < writers; w++) {
+            Epic epic = epics.get(w);
+            futures.add(executor.submit(() -> {
+                // Свой эпик у каждого потока: статус после возврата из метода должен учитывать изменение
+                for (int i = 0; i < 200; i++) {
+                    Subtask subtask = new Subtask("Подзадача", "", i % 2 == 0 ? Status.DONE : Status.NEW,
+                            epic.getId());
+                    manager.addNewSubtask(subtask);
+                    assertEquals(i == 0 ? Status.DONE : Status.IN_PROGRESS,
+                            manager.getEpicById(epic.getId()).getStatus());
+                    manager.deleteSubtask(subtask.getId());
+                    manager.addNewSubtask(subtask);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        done.set(true);
+        reader.get();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Атомарный счётчик выдал всем подзадачам разные id
+        Set<Integer> ids = new HashSet<>();
+        for (Subtask subtask : manager.getSubtasks()) {
+            assertTrue(ids.add(subtask.getId()));
+        }
+        assertEquals(writers * 200, ids.size());
+    }
+
+    @Test
+    void shouldLetWritersProgressUnderConstantReads() throws Exception {
+        ConcurrentTaskManager manager = new ConcurrentTaskManager();
+        manager.addNewTask(new Task("Отчёт", "", Status.NEW));
+        int writers = 6;
+        int perWriter = 300;
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            // Читатели не отпускают менеджер ни на миг
+            readers.add(executor.submit(() -> {
+                while (!done.get()) {
+                    manager.searchTasks("отчёт", true);
+                    manager.getHistory();
+                    manager.snapshot();
+                    manager.getTaskById(1);
+                }
+            }));
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    manager.addNewTask(new Task("Задача", "", Status.NEW));
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            done.set(true);
+        }
+        for (Future<?> future : readers) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(writers * perWriter + 1, manager.getTasks().size());
+    }
+
+    @Test
+    void shouldRecordLookupsInHistoryWithoutBlocking() throws Exception {
+        ConcurrentTaskManager manager = new ConcurrentTaskManager();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Task task = new Task("Задача " + i, "", Status.NEW);
+            manager.addNewTask(task);
+            tasks.add(task);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    assertNotNull(manager.getTaskById(tasks.get(i % tasks.size()).getId()));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(new HashSet<>(tasks), new HashSet<>(manager.getHistory()));
+
+        // Просмотр из очереди попадает в историю раньше следующего изменения
+        manager.getTaskById(tasks.get(0).getId());
+        manager.getTaskById(tasks.get(1).getId());
+        manager.deleteTask(tasks.get(1).getId());
+        assertEquals(tasks.get(0), manager.getHistory().get(0));
+        assertFalse(manager.getHistory().contains(tasks.get(1)));
+    }
+
+    @Test
+    void shouldReturnSameSnapshotUntilWrite() {
+        ConcurrentTaskManager manager = new ConcurrentTaskManager();
+        manager.addNewTask(new Task("Задача", "", Status.NEW));
+
+        List<Task> tasks = manager.getTasks();
+        assertSame(tasks, manager.getTasks());
+
+        manager.addNewTask(new Task("Задача", "", Status.NEW));
+        assertNotSame(tasks, manager.getTasks());
+        assertEquals(2, manager.getTasks().size());
+        assertEquals(1, tasks.size());
+    }
+}
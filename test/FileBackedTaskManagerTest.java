@@ -8,6 +8,11 @@ import task.Task;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -27,6 +32,11 @@ class FileBackedTaskManagerTest {
         if (tempFile.exists()) {
             tempFile.delete();
         }
+        journalFile().delete();
+    }
+
+    private File journalFile() {
+        return new File(tempFile.getPath() + ".journal");
     }
 
     @Test
@@ -62,6 +72,22 @@ class FileBackedTaskManagerTest {
         assertTrue(loadedSubtasks.contains(subtask2));
     }
 
+    @Test
+    void shouldSaveAndLoadBulkAddedTasks() {
+        Epic epic = new Epic("Epic", "Description", Status.NEW);
+        taskManager.addNewEpic(epic);
+        List<Task> tasks = List.of(new Task("Task 1", "Description", Status.NEW),
+                new Task("Task 2", "Description", Status.DONE));
+        List<Subtask> subtasks = List.of(new Subtask("Subtask", "Description", Status.DONE, epic.getId()));
+        assertTrue(taskManager.addAllTasks(tasks).isEmpty());
+        assertTrue(taskManager.addAllSubtasks(subtasks).isEmpty());
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(tasks, loadedManager.getTasks());
+        assertEquals(subtasks, loadedManager.printArrayIdSubtask(epic.getId()));
+        assertEquals(Status.DONE, loadedManager.getEpicById(epic.getId()).getStatus());
+    }
+
     @Test
     void shouldSaveAndLoadHistory() {
         Task task1 = new Task("Task 1", "Description", Status.NEW);
@@ -156,4 +182,341 @@ class FileBackedTaskManagerTest {
             corruptedFile.delete();
         }
     }
-} 
\ No newline at end of file
+
+    @Test
+    void shouldReplayJournalOnLoad() {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, true);
+        Task task = new Task("Test Task", "Description", Status.NEW);
+        journaled.addNewTask(task);
+        Epic epic = new Epic("Test Epic", "Description", Status.NEW);
+        journaled.addNewEpic(epic);
+        Subtask subtask = new Subtask("Subtask", "Description", Status.DONE, epic.getId());
+        journaled.addNewSubtask(subtask);
+        task.setStatus(Status.IN_PROGRESS);
+        journaled.updateTask(task);
+        journaled.close();
+
+        assertTrue(journalFile().length() > 0);
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(tempFile, true);
+        assertEquals(task, loadedManager.getTaskById(task.getId()));
+        assertEquals(subtask, loadedManager.getSubtaskById(subtask.getId()));
+        assertEquals(Status.DONE, loadedManager.getEpicById(epic.getId()).getStatus());
+        loadedManager.close();
+    }
+
+    @Test
+    void shouldReplayJournalDeletions() {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, true);
+        Epic epic = new Epic("Test Epic", "Description", Status.NEW);
+        journaled.addNewEpic(epic);
+        Subtask subtask = new Subtask("Subtask", "Description", Status.NEW, epic.getId());
+        journaled.addNewSubtask(subtask);
+        Task task = new Task("Test Task", "Description", Status.NEW);
+        journaled.addNewTask(task);
+        journaled.deleteEpic(epic.getId());
+        journaled.clearAllTasks();
+        journaled.close();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(tempFile);
+        assertTrue(loadedManager.getTasks().isEmpty());
+        assertTrue(loadedManager.getEpics().isEmpty());
+        assertTrue(loadedManager.getSubtasks().isEmpty());
+        // Журнал перенесён в снимок
+        assertEquals(0, journalFile().length());
+    }
+
+    @Test
+    void shouldIgnoreTornJournalTail() throws IOException {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, true);
+        Task task = new Task("Test Task", "Description", Status.NEW);
+        journaled.addNewTask(task);
+        journaled.close();
+
+        // Имитируем сбой посреди записи: запись без контрольной суммы и перевода строки
+        Files.write(journalFile().toPath(), "0000 PUT,99,TASK".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(tempFile, true);
+        assertEquals(1, loadedManager.getTasks().size());
+        assertEquals(task, loadedManager.getTaskById(task.getId()));
+        loadedManager.close();
+    }
+
+    @Test
+    void shouldTruncateJournalOnCheckpoint() {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, true);
+        Task task = new Task("Test Task", "Description", Status.NEW);
+        journaled.addNewTask(task);
+        journaled.checkpoint();
+        journaled.close();
+
+        assertEquals(0, journalFile().length());
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(task, loadedManager.getTaskById(task.getId()));
+    }
+
+    @Test
+    void shouldCheckpointWhenJournalExceedsThreshold() {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, true);
+        try (JournalCheckpointer checkpointer = new JournalCheckpointer(journaled, Long.MAX_VALUE, 3, 1000)) {
+            journaled.addNewTask(new Task("Task 1", "Description", Status.NEW));
+            journaled.addNewTask(new Task("Task 2", "Description", Status.NEW));
+            assertFalse(checkpointer.checkpointIfNeeded());
+
+            journaled.addNewTask(new Task("Task 3", "Description", Status.NEW));
+            assertTrue(checkpointer.checkpointIfNeeded());
+            assertEquals(1, checkpointer.getCheckpointCount());
+            assertEquals(0, journaled.getJournalRecords());
+
+            // Изменения после снимка попадают в новый журнал
+            journaled.deleteTask(1);
+        }
+        journaled.close();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(tempFile, true);
+        assertEquals(2, loadedManager.getTasks().size());
+        assertNull(loadedManager.getTaskById(1));
+        loadedManager.close();
+    }
+
+    @Test
+    void shouldWriteGroupCommitOnFlush() {
+        taskManager.enableGroupCommit(60_000, Integer.MAX_VALUE);
+        for (int i = 0; i < 100; i++) {
+            taskManager.addNewTask(new Task("Task " + i, "Description", Status.NEW));
+        }
+        taskManager.flush();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(100, loadedManager.getTasks().size());
+
+        taskManager.deleteTask(1);
+        taskManager.close();
+        loadedManager = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(99, loadedManager.getTasks().size());
+    }
+
+    @Test
+    void shouldSaveAndLoadBinarySnapshot() {
+        taskManager.setSnapshotFormat(SnapshotFormat.BINARY);
+        Task task = new Task("Задача, с запятой", "Description", Status.IN_PROGRESS);
+        task.setStartTime(LocalDateTime.of(2024, 1, 1, 10, 0, 30));
+        task.setDuration(Duration.ofMinutes(90));
+        taskManager.addNewTask(task);
+        Epic epic = new Epic("Test Epic", null, Status.NEW);
+        taskManager.addNewEpic(epic);
+        Subtask subtask = new Subtask("Subtask", "Description", Status.DONE, epic.getId());
+        subtask.setStartTime(LocalDateTime.of(1969, 12, 31, 23, 0));
+        taskManager.addNewSubtask(subtask);
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(SnapshotFormat.BINARY, loadedManager.getSnapshotFormat());
+        assertEquals(task, loadedManager.getTaskById(task.getId()));
+        assertEquals(subtask, loadedManager.getSubtaskById(subtask.getId()));
+        assertEquals(Status.DONE, loadedManager.getEpicById(epic.getId()).getStatus());
+    }
+
+    @Test
+    void shouldConvertBetweenCsvAndBinary() throws IOException {
+        Epic epic = new Epic("Test Epic", "Description", Status.NEW);
+        taskManager.addNewEpic(epic);
+        Subtask subtask = new Subtask("Subtask", "Description", Status.IN_PROGRESS, epic.getId());
+        taskManager.addNewSubtask(subtask);
+
+        File binaryFile = File.createTempFile("tasks", ".bin");
+        File csvFile = File.createTempFile("tasks", ".csv");
+        try {
+            FileBackedTaskManager.convert(tempFile, binaryFile, SnapshotFormat.BINARY);
+            FileBackedTaskManager.convert(binaryFile, csvFile, SnapshotFormat.CSV);
+
+            assertEquals(SnapshotFormat.BINARY, FileBackedTaskManager.loadFromFile(binaryFile).getSnapshotFormat());
+            assertEquals(Files.readAllLines(tempFile.toPath()), Files.readAllLines(csvFile.toPath()));
+        } finally {
+            binaryFile.delete();
+            csvFile.delete();
+        }
+    }
+
+    @Test
+    void shouldSaveAndLoadTasksWithTime() throws IOException {
+        Task task = new Task("Test Task", "Description", Status.NEW);
+        task.setStartTime(LocalDateTime.of(2024, 1, 1, 10, 0));
+        task.setDuration(Duration.ofMinutes(60));
+        taskManager.addNewTask(task);
+        Epic epic = new Epic("Test Epic", "Description", Status.NEW);
+        taskManager.addNewEpic(epic);
+        Subtask subtask = new Subtask("Subtask", "Description", Status.NEW, epic.getId());
+        subtask.setStartTime(LocalDateTime.of(2024, 1, 1, 12, 0, 15, 500_000_000));
+        subtask.setDuration(Duration.ofMinutes(30));
+        taskManager.addNewSubtask(subtask);
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(task, loadedManager.getTaskById(task.getId()));
+        assertEquals(subtask, loadedManager.getSubtaskById(subtask.getId()));
+
+        // Строки с переводом строки Windows и некорректным временем
+        Files.writeString(tempFile.toPath(), "id,type,name,status,description,epic,duration,startTime\r\n"
+                + "1,TASK,Task,NEW,Description,,15,2024-02-03T04:05\r\n"
+                + "2,TASK,Broken,NEW,Description,,15,2024-13-03T04:05\r\n");
+        loadedManager = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(1, loadedManager.getTasks().size());
+        assertEquals(LocalDateTime.of(2024, 2, 3, 4, 5), loadedManager.getTaskById(1).getStartTime());
+    }
+
+    @Test
+    void shouldLoadInParallelSameAsSequential() {
+        for (int e = 0; e < 20; e++) {
+            Epic epic = new Epic("Epic " + e, "Description", Status.NEW);
+            taskManager.addNewEpic(epic);
+            for (int i = 0; i < 50; i++) {
+                Subtask subtask = new Subtask("Subtask " + i, "Description", Status.values()[(e + i) % 3], epic.getId());
+                subtask.setStartTime(LocalDateTime.of(2024, 1, 1, 0, 0).plusHours(e * 100L + i));
+                subtask.setDuration(Duration.ofMinutes(30));
+                taskManager.addNewSubtask(subtask);
+            }
+            taskManager.addNewTask(new Task("Task " + e, "Description", Status.DONE));
+        }
+
+        FileBackedTaskManager sequential = FileBackedTaskManager.loadFromFile(tempFile, false, false);
+        FileBackedTaskManager parallel = FileBackedTaskManager.loadFromFile(tempFile, false, true);
+        assertEquals(sequential.getTasks(), parallel.getTasks());
+        assertEquals(sequential.getEpics(), parallel.getEpics());
+        assertEquals(sequential.getSubtasks(), parallel.getSubtasks());
+        for (Epic epic : parallel.getEpics()) {
+            assertNotNull(epic.getEndTime());
+        }
+    }
+
+    @Test
+    void shouldRestoreIndexesOnLoad() {
+        Task task1 = new Task("Task 1", "Description", Status.NEW);
+        task1.setStartTime(LocalDateTime.of(2024, 1, 1, 12, 0));
+        task1.setDuration(Duration.ofMinutes(60));
+        taskManager.addNewTask(task1);
+        Epic epic = new Epic("Epic", "Description", Status.NEW);
+        taskManager.addNewEpic(epic);
+        Subtask subtask = new Subtask("Subtask", "Description", Status.NEW, epic.getId());
+        subtask.setStartTime(LocalDateTime.of(2024, 1, 1, 9, 0));
+        subtask.setDuration(Duration.ofMinutes(30));
+        taskManager.addNewSubtask(subtask);
+        taskManager.addNewTask(new Task("Task 2", "Description", Status.NEW));
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(List.of(epic, subtask, task1), List.copyOf(loadedManager.getPrioritizedTasks()));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 9, 30), loadedManager.getEpicById(epic.getId()).getEndTime());
+        assertEquals(List.of(task1), loadedManager.searchTasks("task 1", true));
+
+        Task overlapping = new Task("Overlapping", "Description", Status.NEW);
+        overlapping.setStartTime(LocalDateTime.of(2024, 1, 1, 12, 30));
+        overlapping.setDuration(Duration.ofMinutes(60));
+        assertTrue(loadedManager.isTaskIntersectWithAny(overlapping));
+
+        Task newTask = new Task("New Task", "Description", Status.NEW);
+        loadedManager.addNewTask(newTask);
+        assertEquals(5, newTask.getId());
+    }
+
+    @Test
+    void shouldEscapeSpecialCharactersInCsv() throws IOException {
+        Task task = new Task("Имя, с \"кавычками\"", "Строка 1\nСтрока 2\r\\путь, 😀", Status.NEW);
+        task.setStartTime(LocalDateTime.of(2024, 1, 1, 10, 0, 0, 120_000_000));
+        task.setDuration(Duration.ofMinutes(15));
+        taskManager.addNewTask(task);
+
+        List<String> lines = Files.readAllLines(tempFile.toPath());
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).endsWith(",15,2024-01-01T10:00:00.12"));
+        assertEquals(task, FileBackedTaskManager.loadFromFile(tempFile).getTaskById(task.getId()));
+
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, true);
+        journaled.addNewTask(task);
+        journaled.close();
+        assertEquals(task, FileBackedTaskManager.loadFromFile(tempFile, true).getTaskById(task.getId()));
+    }
+
+    @Test
+    void shouldReencodeOnlyChangedRowsOnSave() {
+        for (int i = 0; i < 10; i++) {
+            taskManager.addNewTask(new Task("Задача " + i, "Описание", Status.NEW));
+        }
+        Epic epic = new Epic("Эпик", "Описание", Status.NEW);
+        taskManager.addNewEpic(epic);
+        Subtask subtask = new Subtask("Подзадача", "Описание", Status.NEW, epic.getId());
+        taskManager.addNewSubtask(subtask);
+
+        // Изменение задачи кодирует только её строку
+        long encoded = taskManager.getEncodedRowCount();
+        Task task = taskManager.getTaskById(1);
+        task.setStatus(Status.DONE);
+        taskManager.updateTask(task);
+        assertEquals(encoded + 1, taskManager.getEncodedRowCount());
+
+        // Изменение подзадачи меняет и статус эпика
+        subtask.setStatus(Status.IN_PROGRESS);
+        taskManager.updateSubtask(subtask);
+        assertEquals(encoded + 3, taskManager.getEncodedRowCount());
+
+        // Удаление ничего не кодирует
+        taskManager.deleteTask(2);
+        assertEquals(encoded + 3, taskManager.getEncodedRowCount());
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(9, loaded.getTasks().size());
+        assertEquals(Status.DONE, loaded.getTaskById(1).getStatus());
+        assertNull(loaded.getTaskById(2));
+        assertEquals(Status.IN_PROGRESS, loaded.getSubtaskById(subtask.getId()).getStatus());
+        assertEquals(Status.IN_PROGRESS, loaded.getEpicById(epic.getId()).getStatus());
+    }
+
+    @Test
+    void shouldWriteBatchToJournalAtOnce() throws IOException {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, true);
+        journaled.addNewTask(new Task("До пакета", "", Status.NEW));
+        long records = journaled.getJournalRecords();
+        journaled.batch(batch -> {
+            Epic epic = new Epic("Эпик", "", Status.NEW);
+            batch.addNewEpic(epic);
+            batch.addNewSubtask(new Subtask("Подзадача 1", "", Status.DONE, epic.getId()));
+            batch.addNewSubtask(new Subtask("Подзадача 2", "", Status.DONE, epic.getId()));
+        });
+        // Три мутации и записи начала и конца пакета
+        assertEquals(records + 5, journaled.getJournalRecords());
+        journaled.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, true);
+        assertEquals(2, loaded.getSubtasks().size());
+        assertEquals(Status.DONE, loaded.getEpics().get(0).getStatus());
+        loaded.close();
+
+        // Пакет без записи END не проигрывается
+        List<String> lines = Files.readAllLines(journalFile().toPath());
+        Files.write(journalFile().toPath(), lines.subList(0, lines.size() - 1));
+        FileBackedTaskManager torn = FileBackedTaskManager.loadFromFile(tempFile, true);
+        assertEquals(1, torn.getTasks().size());
+        assertTrue(torn.getEpics().isEmpty());
+        assertTrue(torn.getSubtasks().isEmpty());
+        torn.close();
+    }
+
+    @Test
+    void shouldKeepWritesAfterTornBatch() throws IOException {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, true);
+        journaled.addNewTask(new Task("До пакета", "", Status.NEW));
+        journaled.batch(batch -> batch.addNewTask(new Task("В пакете", "", Status.NEW)));
+        journaled.close();
+
+        // Отрезаем запись END, затем пишем после оборванного пакета
+        List<String> lines = Files.readAllLines(journalFile().toPath());
+        Files.write(journalFile().toPath(), lines.subList(0, lines.size() - 1));
+        FileBackedTaskManager torn = FileBackedTaskManager.loadFromFile(tempFile, true);
+        Task after = new Task("После пакета", "", Status.NEW);
+        torn.addNewTask(after);
+        torn.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, true);
+        assertEquals(2, loaded.getTasks().size());
+        assertEquals(after, loaded.getTaskById(after.getId()));
+        loaded.close();
+    }
+}
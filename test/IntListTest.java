@@ -0,0 +1,38 @@
+import org.junit.jupiter.api.Test;
+import task.IntList;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntListTest {
+
+    @Test
+    void shouldKeepInsertionOrderAfterRemovals() {
+        Random random = new Random(3);
+        IntList list = new IntList();
+        LinkedHashSet<Integer> expected = new LinkedHashSet<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            int value = random.nextInt(3000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), list.remove(value));
+            } else {
+                assertEquals(expected.add(value), list.add(value));
+            }
+            assertEquals(expected.size(), list.size());
+        }
+
+        List<Integer> actual = new ArrayList<>();
+        list.forEach(actual::add);
+        assertEquals(new ArrayList<>(expected), actual);
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), list.toArray());
+        for (int value = 0; value < 3000; value++) {
+            assertEquals(expected.contains(value), list.contains(value));
+        }
+        assertEquals(list, list.copy());
+    }
+}
@@ -0,0 +1,58 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntObjectMapTest {
+
+    @Test
+    void shouldBehaveLikeHashMap() {
+        Random random = new Random(1);
+        IntObjectMap<String> map = new IntObjectMap<>();
+        HashMap<Integer, String> expected = new HashMap<>();
+
+        // Ключи из небольшого диапазона и с общими младшими битами, чтобы были длинные цепочки
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextBoolean() ? random.nextInt(2000) : random.nextInt(50) << 16;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = "v" + i;
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = 0; key < 2000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+
+        List<String> values = new ArrayList<>(map.values());
+        assertEquals(expected.size(), values.size());
+        assertTrue(values.containsAll(expected.values()));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+    }
+
+    @Test
+    void shouldKeepAscendingOrderForSequentialIds() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        for (int id = 1; id <= 100; id++) {
+            map.put(id, id);
+        }
+        map.remove(50);
+
+        int previous = 0;
+        for (int id : map.values()) {
+            assertTrue(id > previous);
+            previous = id;
+        }
+        assertEquals(99, map.size());
+    }
+}
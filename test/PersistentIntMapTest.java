@@ -0,0 +1,48 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentIntMapTest {
+
+    @Test
+    void shouldKeepOldVersionsUnchanged() {
+        Random random = new Random(2);
+        PersistentIntMap<String> map = PersistentIntMap.empty();
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        List<PersistentIntMap<String>> versions = new ArrayList<>();
+        List<TreeMap<Integer, String>> expectedVersions = new ArrayList<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextBoolean() ? random.nextInt(3000) : random.nextInt(Integer.MAX_VALUE);
+            if (random.nextInt(3) == 0) {
+                map = map.remove(key);
+                expected.remove(key);
+            } else {
+                map = map.put(key, "v" + i);
+                expected.put(key, "v" + i);
+            }
+            assertEquals(expected.size(), map.size());
+            if (i % 1000 == 0) {
+                versions.add(map);
+                expectedVersions.add(new TreeMap<>(expected));
+            }
+        }
+
+        // Каждая сохранённая версия видит своё содержимое по возрастанию ключа
+        for (int v = 0; v < versions.size(); v++) {
+            List<String> actual = new ArrayList<>();
+            versions.get(v).forEach(actual::add);
+            assertEquals(new ArrayList<>(expectedVersions.get(v).values()), actual);
+            for (int key : expectedVersions.get(v).keySet()) {
+                assertEquals(expectedVersions.get(v).get(key), versions.get(v).get(key));
+            }
+        }
+        assertSame(map, map.remove(-1));
+        assertNull(map.get(-1));
+    }
+}
@@ -4,6 +4,16 @@ import task.Epic;
 import task.Status;
 import task.Subtask;
 import task.Task;
+import task.Type;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -66,6 +76,24 @@ class TaskManagerTest {
         assertEquals(Status.DONE, updatedEpic.getStatus());
     }
 
+    @Test
+    void shouldDeriveEpicStatusOnUpdate() {
+        Epic epic = new Epic("Эпик", "", Status.NEW);
+        manager.addNewEpic(epic);
+        manager.addNewSubtask(new Subtask("Подзадача", "", Status.DONE, epic.getId()));
+
+        // Статус, переданный вызывающим, не должен расходиться с подзадачами
+        Epic renamed = new Epic("Новое имя", "", Status.NEW);
+        renamed.setId(epic.getId());
+        manager.updateEpic(renamed);
+        assertEquals(Status.DONE, manager.getEpicById(epic.getId()).getStatus());
+
+        renamed.setStatus(Status.IN_PROGRESS);
+        manager.updateEpic(renamed);
+        assertEquals(Status.DONE, manager.getEpicById(epic.getId()).getStatus());
+        assertEquals(List.of(renamed), manager.getEpicsByStatus(Status.DONE));
+    }
+
     @Test
     void shouldDeleteTask() {
         Task task = new Task("Test Task", "Description", Status.NEW);
@@ -128,4 +156,470 @@ class TaskManagerTest {
         checkTask.setStatus(Status.DONE);
         assertEquals(checkTask, manager.getHistory().getFirst());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldUpdateEpicOnceAfterBatch() {
+        Epic epic = new Epic("Эпик", "", Status.NEW);
+        manager.addNewEpic(epic);
+        manager.batch(batch -> {
+            for (int i = 0; i < 5; i++) {
+                batch.addNewSubtask(new Subtask("Подзадача " + i, "", Status.DONE, epic.getId()));
+            }
+        });
+
+        assertEquals(5, manager.printArrayIdSubtask(epic.getId()).size());
+        assertEquals(Status.DONE, manager.getEpicById(epic.getId()).getStatus());
+    }
+
+    @Test
+    void shouldReuseReadSnapshotsUntilChange() {
+        Epic epic = new Epic("Эпик", "", Status.NEW);
+        manager.addNewEpic(epic);
+        Task task = new Task("Задача", "", Status.NEW);
+        manager.addNewTask(task);
+        Subtask subtask = new Subtask("Подзадача", "", Status.NEW, epic.getId());
+        manager.addNewSubtask(subtask);
+
+        List<Task> tasks = manager.getTasks();
+        List<Subtask> epicSubtasks = manager.printArrayIdSubtask(epic.getId());
+        assertSame(tasks, manager.getTasks());
+        assertSame(epicSubtasks, manager.printArrayIdSubtask(epic.getId()));
+        assertSame(manager.getPrioritizedTasks(), manager.getPrioritizedTasks());
+        assertThrows(UnsupportedOperationException.class, () -> tasks.add(task));
+        assertThrows(UnsupportedOperationException.class, () -> manager.getPrioritizedTasks().clear());
+
+        // Изменение задач не трогает снимок подзадач, но выданный снимок задач остаётся прежним
+        manager.addNewTask(new Task("Ещё задача", "", Status.NEW));
+        assertEquals(List.of(task), tasks);
+        assertEquals(2, manager.getTasks().size());
+        assertSame(epicSubtasks, manager.printArrayIdSubtask(epic.getId()));
+
+        manager.deleteSubtask(subtask.getId());
+        assertTrue(manager.printArrayIdSubtask(epic.getId()).isEmpty());
+        assertEquals(List.of(subtask), epicSubtasks);
+    }
+
+    @Test
+    void shouldBoundSnapshotChangeLog() {
+        InMemoryTaskManager tracked = new InMemoryTaskManager();
+        Task kept = new Task("Задача", "", Status.NEW);
+        tracked.addNewTask(kept);
+        TaskSnapshot before = tracked.snapshot();
+
+        // После одного среза менеджер только меняют: журнал не растёт больше своего предела
+        for (int i = 0; i < 5000; i++) {
+            Task temporary = new Task("Временная", "", Status.NEW);
+            tracked.addNewTask(temporary);
+            tracked.deleteTask(temporary.getId());
+            assertTrue(tracked.getChangeLogSize() <= 1025);
+        }
+        kept.setStatus(Status.DONE);
+        tracked.updateTask(kept);
+
+        // Срез после переполнения строится заново и остаётся согласованным
+        TaskSnapshot after = tracked.snapshot();
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertEquals(1, after.getTaskCount());
+        assertEquals(Status.DONE, after.getTask(kept.getId()).getStatus());
+        assertEquals(Status.NEW, before.getTask(kept.getId()).getStatus());
+        assertEquals(0, tracked.getChangeLogSize());
+        assertSame(after, tracked.snapshot());
+    }
+
+    @Test
+    void shouldPageAndContinuePrioritizedTasksByCursor() {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 9, 0);
+        for (int i = 0; i < 10; i++) {
+            Task task = new Task("Задача " + i, "", Status.NEW);
+            task.setStartTime(base.plusHours(i));
+            task.setDuration(Duration.ofMinutes(30));
+            manager.addNewTask(task);
+        }
+        List<Task> all = new ArrayList<>(manager.getPrioritizedTasks());
+
+        assertEquals(all.subList(3, 6), manager.getPrioritizedTasks(3, 3));
+        assertEquals(all.subList(8, 10), manager.getPrioritizedTasks(8, 5));
+        assertTrue(manager.getPrioritizedTasks(20, 5).isEmpty());
+        assertEquals(all.subList(0, 4), manager.getTasks(0, 4));
+        assertThrows(IllegalArgumentException.class, () -> manager.getTasks(-1, 4));
+
+        // Курсор продолжает список с места, где остановилась прошлая страница, даже после удаления
+        Task last = all.get(4);
+        manager.deleteTask(all.get(2).getId());
+        manager.deleteTask(last.getId());
+        assertEquals(all.subList(5, 8), manager.getPrioritizedTasksAfter(last.getStartTime(), last.getId(), 3));
+        assertEquals(all.subList(0, 2), manager.getPrioritizedTasksAfter(base.minusDays(1), 0, 2));
+    }
+
+    @Test
+    void shouldKeepSnapshotUnchangedAfterWrites() {
+        Epic epic = new Epic("Эпик", "", Status.NEW);
+        manager.addNewEpic(epic);
+        Subtask subtask = new Subtask("Подзадача", "", Status.NEW, epic.getId());
+        manager.addNewSubtask(subtask);
+        Task task = new Task("Задача", "", Status.NEW);
+        manager.addNewTask(task);
+
+        TaskSnapshot before = manager.snapshot();
+        assertSame(before, manager.snapshot());
+
+        subtask.setStatus(Status.DONE); // изменение на месте не видно в срезе
+        manager.updateSubtask(subtask);
+        manager.deleteTask(task.getId());
+        Subtask added = new Subtask("Ещё подзадача", "", Status.NEW, epic.getId());
+        manager.addNewSubtask(added);
+
+        assertEquals(Status.NEW, before.getSubtask(subtask.getId()).getStatus());
+        assertEquals(Status.NEW, before.getEpic(epic.getId()).getStatus());
+        assertEquals(task, before.getTask(task.getId()));
+        assertEquals(1, before.getEpicSubtasks(epic.getId()).size());
+
+        TaskSnapshot after = manager.snapshot();
+        assertTrue(after.getVersion() > before.getVersion());
+        assertEquals(Status.DONE, after.getSubtask(subtask.getId()).getStatus());
+        assertEquals(Status.IN_PROGRESS, after.getEpic(epic.getId()).getStatus());
+        assertNull(after.getTask(task.getId()));
+        assertEquals(List.of(subtask, added), after.getEpicSubtasks(epic.getId()));
+        assertThrows(IllegalStateException.class, () -> manager.batch(batch -> batch.snapshot()));
+    }
+
+    @Test
+    void shouldKeepStatusIndexesInSyncWithFullScan() {
+        InMemoryTaskManager indexed = new InMemoryTaskManager();
+        Random random = new Random(9);
+        Status[] statuses = Status.values();
+        List<Integer> epicIds = new ArrayList<>();
+
+        for (int i = 0; i < 3000; i++) {
+            int action = random.nextInt(20);
+            if (epicIds.isEmpty() || action == 0) {
+                Epic epic = new Epic("Эпик", "", Status.NEW);
+                indexed.addNewEpic(epic);
+                epicIds.add(epic.getId());
+            } else if (action < 6) {
+                indexed.addNewTask(new Task("Задача", "", statuses[random.nextInt(3)]));
+            } else if (action < 12) {
+                indexed.addNewSubtask(new Subtask("Подзадача", "", statuses[random.nextInt(3)],
+                        epicIds.get(random.nextInt(epicIds.size()))));
+            } else if (action < 16 && !indexed.getSubtasks().isEmpty()) {
+                // Статус меняется на месте у сохранённого объекта
+                Subtask subtask = indexed.getSubtasks().get(random.nextInt(indexed.getSubtasks().size()));
+                subtask.setStatus(statuses[random.nextInt(3)]);
+                indexed.updateSubtask(subtask);
+            } else if (action < 18 && !indexed.getTasks().isEmpty()) {
+                indexed.deleteTask(indexed.getTasks().get(random.nextInt(indexed.getTasks().size())).getId());
+            } else if (action == 18 && !indexed.getSubtasks().isEmpty()) {
+                indexed.deleteSubtask(indexed.getSubtasks().get(0).getId());
+            } else if (action == 19 && random.nextInt(20) == 0) {
+                int idEpic = epicIds.remove(random.nextInt(epicIds.size()));
+                indexed.deleteEpic(idEpic);
+            }
+        }
+
+        for (Status status : statuses) {
+            assertEquals(indexed.getTasks().stream().filter(t -> t.getStatus() == status).count(),
+                    indexed.countByStatus(Type.TASK, status));
+            assertEquals(indexed.getSubtasks().stream().filter(t -> t.getStatus() == status).toList().size(),
+                    indexed.getSubtasksByStatus(status).size());
+            assertTrue(indexed.getSubtasksByStatus(status).stream().allMatch(t -> t.getStatus() == status));
+            assertEquals(indexed.getEpics().stream().filter(e -> e.getStatus() == status).count(),
+                    indexed.countByStatus(Type.EPIC, status));
+            for (int idEpic : epicIds) {
+                List<Subtask> expected = indexed.printArrayIdSubtask(idEpic).stream()
+                        .filter(t -> t.getStatus() == status).toList();
+                List<Subtask> actual = indexed.getEpicSubtasksByStatus(idEpic, status);
+                assertEquals(expected.size(), actual.size());
+                assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+            }
+        }
+    }
+
+    @Test
+    void shouldSearchTasksByText() {
+        Task report = new Task("Отчёт за квартал", "Собрать отчёт и отправить", Status.NEW);
+        manager.addNewTask(report);
+        Epic release = new Epic("Релиз", "Подготовка релиза и отчёт", Status.NEW);
+        manager.addNewEpic(release);
+        Subtask notes = new Subtask("Release notes", "Описать изменения релиза", Status.NEW, release.getId());
+        manager.addNewSubtask(notes);
+
+        // Два вхождения слова «отчёт» дают задаче больший вес, чем одно у эпика
+        assertEquals(List.of(report, release), manager.searchTasks("отчёт", true));
+        assertEquals(List.of(release), manager.searchTasks("отчёт релиза", true));
+        // При равном весе задача с меньшим id идёт раньше
+        assertEquals(List.of(report, release, notes), manager.searchTasks("отчёт релиза", false));
+        assertEquals(List.of(notes), manager.searchTasks("RELEASE", true));
+        assertEquals(List.of(release), manager.searchTasks("рел*", true).subList(0, 1));
+        assertTrue(manager.searchTasks("отчёт отпуск", true).isEmpty());
+
+        // Индекс следует за изменениями, в том числе сделанными на месте
+        report.setName("Квартальная сводка");
+        report.setDescription("");
+        manager.updateTask(report);
+        assertEquals(List.of(release), manager.searchTasks("отчёт", true));
+        assertEquals(List.of(report), manager.searchTasks("сводка", true));
+        manager.deleteEpic(release.getId());
+        assertTrue(manager.searchTasks("релиза", false).isEmpty());
+    }
+
+    @Test
+    void shouldPlanQueriesByMostSelectiveIndex() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 9, 0);
+        Epic epic = new Epic("Переезд", "Офис", Status.NEW);
+        manager.addNewEpic(epic);
+        List<Task> all = new ArrayList<>(List.of(epic));
+        for (int i = 0; i < 30; i++) {
+            Status status = i % 3 == 0 ? Status.DONE : Status.NEW;
+            Task task;
+            if (i % 2 == 0) {
+                task = new Task("Задача " + i, i % 5 == 0 ? "созвон" : "", status, Duration.ofMinutes(30),
+                        start.plusHours(i));
+                manager.addNewTask(task);
+            } else {
+                Subtask subtask = new Subtask("Подзадача " + i, "коробки", status, epic.getId());
+                subtask.setStartTime(start.plusHours(i));
+                subtask.setDuration(Duration.ofMinutes(30));
+                manager.addNewSubtask(subtask);
+                task = subtask;
+            }
+            all.add(task);
+        }
+
+        // Подзадачи эпика со статусом: источник — индекс статусов внутри эпика
+        TaskQuery byEpic = new TaskQuery().epic(epic.getId()).status(Status.DONE);
+        assertTrue(manager.explain(byEpic).startsWith("источник: EPIC_SUBTASKS ≈5"));
+        assertEquals(scan(all, task -> task instanceof Subtask && task.getStatus() == Status.DONE),
+                toList(manager.query(byEpic)));
+
+        // Узкое окно времени выгоднее обхода по типу
+        LocalDateTime from = start.plusHours(10);
+        LocalDateTime to = start.plusHours(14);
+        TaskQuery byTime = new TaskQuery().type(Type.TASK).between(from, to);
+        assertTrue(manager.explain(byTime).startsWith("источник: TIME_RANGE"));
+        assertEquals(scan(all, task -> task.getType() == Type.TASK && !task.getStartTime().isBefore(from)
+                && task.getStartTime().isBefore(to)), toList(manager.query(byTime)));
+
+        // Без типа эпики сливаются с обходом индекса интервалов в порядке времени начала
+        TaskQuery anyType = new TaskQuery().between(from, to);
+        assertTrue(manager.explain(anyType).startsWith("источник: TIME_RANGE"));
+        List<Task> inWindow = scan(all, task -> task.getStartTime().isBefore(to)
+                && (!task.getStartTime().isBefore(from) || task.getEndTime().isAfter(from)));
+        inWindow.sort(Comparator.comparing(Task::getStartTime).thenComparing(Task::getId));
+        assertEquals(epic, inWindow.get(0));
+        assertEquals(inWindow, toList(manager.query(anyType)));
+
+        // Редкое слово выбирает текстовый индекс, остальные условия проверяются фильтром
+        TaskQuery byText = new TaskQuery().text("созвон", true).status(Status.DONE);
+        assertTrue(manager.explain(byText).startsWith("источник: TEXT_INDEX ≈3"));
+        assertEquals(List.of(all.get(1)), toList(manager.query(byText)));
+
+        // Смещение и лимит применяются к отфильтрованному потоку
+        TaskQuery page = new TaskQuery().status(Status.NEW).type(Type.SUBTASK).offset(2).limit(3);
+        assertTrue(manager.explain(page).startsWith("источник: STATUS_INDEX"));
+        assertEquals(scan(all, task -> task instanceof Subtask && task.getStatus() == Status.NEW).subList(2, 5),
+                toList(manager.query(page)));
+
+        assertEquals(List.of(epic), toList(manager.query(new TaskQuery().id(epic.getId()))));
+        assertEquals(all.size(), toList(manager.query(new TaskQuery())).size());
+        assertTrue(manager.explain(new TaskQuery()).startsWith("источник: FULL_SCAN"));
+    }
+
+    @Test
+    void shouldBulkAddAndRejectOverlaps() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 9, 0);
+        Task existing = new Task("Есть", "", Status.NEW, Duration.ofHours(1), start.plusHours(2));
+        manager.addNewTask(existing);
+
+        Task first = new Task("Первая", "", Status.NEW, Duration.ofHours(1), start);
+        Task sameStart = new Task("То же начало", "", Status.NEW, Duration.ofMinutes(30), start);
+        Task inside = new Task("Внутри первой", "", Status.NEW, Duration.ofMinutes(10), start.plusMinutes(20));
+        Task touching = new Task("Встык", "", Status.NEW, Duration.ofHours(1), start.plusHours(1));
+        Task overExisting = new Task("Поверх", "", Status.NEW, Duration.ofHours(1), start.plusMinutes(150));
+        Task untimed = new Task("Без времени", "", Status.NEW);
+        List<Task> rejected = manager.addAllTasks(List.of(touching, overExisting, untimed, inside, first, sameStart));
+
+        assertEquals(List.of(overExisting, inside), rejected);
+        // Принятые получают подряд идущие id в порядке пакета
+        assertEquals(List.of(existing.getId() + 1, existing.getId() + 2, existing.getId() + 3, existing.getId() + 4),
+                List.of(touching.getId(), untimed.getId(), first.getId(), sameStart.getId()));
+        assertEquals(5, manager.getTasks().size());
+        for (Task task : manager.getTasks()) {
+            assertFalse(manager.isTaskIntersectWithAny(task));
+        }
+
+        Epic epic = new Epic("Эпик", "", Status.NEW);
+        manager.addNewEpic(epic);
+        Subtask done = new Subtask("Готово", "", Status.DONE, epic.getId());
+        done.setStartTime(start.plusHours(5));
+        done.setDuration(Duration.ofHours(1));
+        Subtask clash = new Subtask("Занято", "", Status.NEW, epic.getId());
+        clash.setStartTime(start.plusMinutes(30));
+        clash.setDuration(Duration.ofHours(1));
+        Subtask more = new Subtask("Ещё", "", Status.DONE, epic.getId());
+        assertEquals(List.of(clash), manager.addAllSubtasks(List.of(done, clash, more)));
+        assertEquals(List.of(done, more), manager.printArrayIdSubtask(epic.getId()));
+        assertEquals(Status.DONE, epic.getStatus());
+        assertEquals(start.plusHours(5), epic.getStartTime());
+    }
+
+    private static List<Task> scan(List<Task> all, Predicate<Task> filter) {
+        List<Task> result = new ArrayList<>();
+        for (Task task : all) {
+            if (filter.test(task)) result.add(task);
+        }
+        return result;
+    }
+
+    private static List<Task> toList(Iterable<Task> tasks) {
+        List<Task> result = new ArrayList<>();
+        tasks.forEach(result::add);
+        return result;
+    }
+
+    @Test
+    void shouldKeepTextIndexInSyncUnderChurn() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Task task = new Task("Общая задача " + i, i % 3 == 0 ? "срочно" : "", Status.NEW);
+            manager.addNewTask(task);
+            tasks.add(task);
+        }
+        // Удаления и обновления помечают записи и уплотняют списки, порядок результата не меняется
+        List<Task> urgent = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            if (i % 2 == 0) {
+                manager.deleteTask(task.getId());
+                continue;
+            }
+            task.setDescription(i % 5 == 0 ? "срочно" : "потом");
+            manager.updateTask(task);
+            if (i % 5 == 0) {
+                urgent.add(task);
+            }
+        }
+        assertEquals(urgent, manager.searchTasks("срочно", true));
+        assertEquals(100, manager.searchTasks("общая", true).size());
+        assertTrue(manager.searchTasks("общая задача 0", true).isEmpty());
+    }
+
+    @Test
+    void shouldRollbackBatchOnException() {
+        Epic epic = new Epic("Эпик", "", Status.NEW);
+        manager.addNewEpic(epic);
+        Subtask subtask = new Subtask("Подзадача", "", Status.NEW, epic.getId());
+        manager.addNewSubtask(subtask);
+        Task task = new Task("Задача", "", Status.NEW);
+        manager.addNewTask(task);
+        manager.getTaskById(task.getId());
+
+        assertThrows(IllegalStateException.class, () -> manager.batch(batch -> {
+            batch.addNewTask(new Task("Новая задача", "", Status.NEW));
+            batch.deleteTask(task.getId());
+            Subtask done = new Subtask("Подзадача", "", Status.DONE, epic.getId());
+            done.setId(subtask.getId());
+            batch.updateSubtask(done);
+            batch.clearAllSubtasks();
+            throw new IllegalStateException("Ошибка импорта");
+        }));
+
+        assertEquals(List.of(task), manager.getTasks());
+        assertEquals(List.of(subtask), manager.getSubtasks());
+        assertEquals(List.of(subtask.getId()), manager.getEpicById(epic.getId()).getIdSubtaskArray());
+        assertEquals(Status.NEW, manager.getEpicById(epic.getId()).getStatus());
+        assertEquals(List.of(epic, task), manager.getHistory());
+
+        // Счётчик id тоже откатывается
+        Task next = new Task("Следующая задача", "", Status.NEW);
+        manager.addNewTask(next);
+        assertEquals(task.getId() + 1, next.getId());
+    }
+
+    @Test
+    void shouldRestoreIndexesOnRollback() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 9, 0);
+        Task task = new Task("Отчёт", "", Status.NEW, Duration.ofHours(1), start);
+        manager.addNewTask(task);
+        Epic epic = new Epic("Релиз", "", Status.NEW);
+        manager.addNewEpic(epic);
+        Subtask subtask = new Subtask("Сборка", "", Status.NEW, epic.getId());
+        subtask.setStartTime(start.plusHours(2));
+        subtask.setDuration(Duration.ofHours(1));
+        manager.addNewSubtask(subtask);
+        Task added = new Task("Новая", "", Status.NEW, Duration.ofHours(1), start.plusHours(4));
+
+        assertThrows(IllegalStateException.class, () -> manager.batch(batch -> {
+            batch.addNewTask(added);
+            Task replaced = new Task("Сводка", "", Status.DONE, Duration.ofHours(1), start.plusHours(6));
+            replaced.setId(task.getId());
+            batch.updateTask(replaced);
+            batch.deleteEpic(epic.getId());
+            throw new IllegalStateException("Ошибка импорта");
+        }));
+
+        assertEquals(0, added.getId());
+        assertEquals(List.of(task, epic, subtask), new ArrayList<>(manager.getPrioritizedTasks()));
+        assertEquals(1, manager.countByStatus(Type.TASK, Status.NEW));
+        assertEquals(0, manager.countByStatus(Type.TASK, Status.DONE));
+        assertEquals(List.of(subtask), manager.getEpicSubtasksByStatus(epic.getId(), Status.NEW));
+        assertEquals(List.of(task), manager.searchTasks("отчёт", true));
+        assertTrue(manager.searchTasks("сводка", true).isEmpty());
+        assertEquals(List.of(subtask), toList(manager.getTasksInRange(start.plusHours(2), start.plusHours(3))));
+        assertEquals(start.plusHours(2), epic.getStartTime());
+        assertTrue(manager.isTaskIntersectWithAny(new Task("", "", Status.NEW, Duration.ofHours(1),
+                start.plusMinutes(30))));
+    }
+
+    @Test
+    void shouldDeriveEpicStatusAfterRollback() {
+        Epic epic = new Epic("Эпик", "", Status.NEW);
+        manager.addNewEpic(epic);
+        Subtask subtask = new Subtask("Подзадача", "", Status.NEW, epic.getId());
+        manager.addNewSubtask(subtask);
+
+        // Подзадача изменена на месте, откат возвращает тот же объект
+        assertThrows(IllegalStateException.class, () -> manager.batch(batch -> {
+            subtask.setStatus(Status.DONE);
+            batch.updateSubtask(subtask);
+            throw new IllegalStateException("Ошибка импорта");
+        }));
+
+        assertEquals(Status.DONE, manager.getSubtaskById(subtask.getId()).getStatus());
+        assertEquals(Status.DONE, manager.getEpicById(epic.getId()).getStatus());
+        assertEquals(List.of(epic), manager.getEpicsByStatus(Status.DONE));
+    }
+
+    @Test
+    void shouldKeepEpicStatusCountersInSyncWithSubtasks() {
+        InMemoryTaskManager checked = new InMemoryTaskManager();
+        checked.setStatusVerification(true); // каждый пересчёт сверяется с полным проходом
+        Random random = new Random(5);
+        Status[] statuses = Status.values();
+        List<Integer> epicIds = new ArrayList<>();
+        List<Subtask> subtasks = new ArrayList<>();
+
+        for (int i = 0; i < 3000; i++) {
+            int action = random.nextInt(10);
+            if (epicIds.isEmpty() || action == 0) {
+                Epic epic = new Epic("Эпик", "", Status.NEW);
+                checked.addNewEpic(epic);
+                epicIds.add(epic.getId());
+            } else if (subtasks.isEmpty() || action < 5) {
+                Subtask subtask = new Subtask("Подзадача", "", statuses[random.nextInt(statuses.length)],
+                        epicIds.get(random.nextInt(epicIds.size())));
+                checked.addNewSubtask(subtask);
+                subtasks.add(subtask);
+            } else if (action < 8) {
+                // Изменение на месте, как в клиентском коде
+                Subtask subtask = subtasks.get(random.nextInt(subtasks.size()));
+                subtask.setStatus(statuses[random.nextInt(statuses.length)]);
+                checked.updateSubtask(subtask);
+            } else if (action == 8) {
+                checked.deleteSubtask(subtasks.remove(random.nextInt(subtasks.size())).getId());
+            } else if (random.nextInt(20) == 0) {
+                checked.clearAllSubtasks();
+                subtasks.clear();
+            }
+        }
+    }
+}
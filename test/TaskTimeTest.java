@@ -7,8 +7,10 @@ import task.Task;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -98,14 +100,16 @@ class TaskTimeTest {
         // Преобразуем Set в List для удобства проверки
         List<Task> taskList = new ArrayList<>(prioritizedTasks);
         
-        // Проверяем, что все задачи добавлены и отсортированы по времени начала
-        assertEquals(4, taskList.size(), "Должно быть 4 задачи в списке");
+        // Проверяем, что все задачи добавлены и отсортированы по времени начала.
+        // Эпик начинается вместе с Подзадачей 1 и стоит перед ней, так как его id меньше
+        assertEquals(5, taskList.size(), "Должно быть 5 задач в списке");
         
         // Проверяем порядок задач
-        assertEquals(subtask1, taskList.get(0), "Первой должна быть Подзадача 1");
-        assertEquals(task1, taskList.get(1), "Второй должна быть Задача 1");
-        assertEquals(subtask2, taskList.get(2), "Третьей должна быть Подзадача 2");
-        assertEquals(task2, taskList.get(3), "Четвертой должна быть Задача 2");
+        assertEquals(epic, taskList.get(0), "Первым должен быть Эпик 1");
+        assertEquals(subtask1, taskList.get(1), "Второй должна быть Подзадача 1");
+        assertEquals(task1, taskList.get(2), "Третьей должна быть Задача 1");
+        assertEquals(subtask2, taskList.get(3), "Четвертой должна быть Подзадача 2");
+        assertEquals(task2, taskList.get(4), "Пятой должна быть Задача 2");
     }
 
     @Test
@@ -118,6 +122,65 @@ class TaskTimeTest {
         assertEquals(expectedEndTime, epic.getEndTime());
     }
 
+    @Test
+    void testEpicTimeWindowMatchesSubtasks() {
+        Random random = new Random(11);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Subtask> added = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int action = random.nextInt(3);
+            if (action == 0 || added.isEmpty()) {
+                Subtask subtask = new Subtask("Subtask", "", Status.NEW, epic.getId());
+                if (random.nextInt(5) > 0) { // часть подзадач без времени
+                    subtask.setStartTime(base.plusMinutes(15L * random.nextInt(2000)));
+                    subtask.setDuration(Duration.ofMinutes(15L * (1 + random.nextInt(4))));
+                }
+                if (!taskManager.isTaskIntersectWithAny(subtask)) {
+                    taskManager.addNewSubtask(subtask);
+                    added.add(subtask);
+                }
+            } else if (action == 1) {
+                // Переносим подзадачу, меняя сохранённый объект на месте
+                Subtask subtask = added.get(random.nextInt(added.size()));
+                LocalDateTime previous = subtask.getStartTime();
+                subtask.setStartTime(base.plusMinutes(15L * random.nextInt(2000)));
+                if (taskManager.isTaskIntersectWithAny(subtask)) {
+                    subtask.setStartTime(previous);
+                }
+                taskManager.updateSubtask(subtask);
+            } else {
+                taskManager.deleteSubtask(added.remove(random.nextInt(added.size())).getId());
+            }
+
+            // Окно эпика совпадает с полным проходом по подзадачам
+            LocalDateTime start = null;
+            LocalDateTime end = null;
+            Duration total = null;
+            for (Subtask subtask : added) {
+                if (subtask.getStartTime() != null && (start == null || subtask.getStartTime().isBefore(start))) {
+                    start = subtask.getStartTime();
+                }
+                if (subtask.getEndTime() != null && (end == null || subtask.getEndTime().isAfter(end))) {
+                    end = subtask.getEndTime();
+                }
+                if (subtask.getDuration() != null) {
+                    total = total == null ? subtask.getDuration() : total.plus(subtask.getDuration());
+                }
+            }
+            assertEquals(start, epic.getStartTime());
+            assertEquals(end, epic.getEndTime());
+            assertEquals(total, epic.getDuration());
+            assertEquals(start != null, taskManager.getPrioritizedTasks().contains(epic));
+        }
+
+        // Приоритетный список упорядочен по времени начала вместе с эпиком
+        LocalDateTime previous = null;
+        for (Task task : taskManager.getPrioritizedTasks()) {
+            assertTrue(previous == null || !task.getStartTime().isBefore(previous));
+            previous = task.getStartTime();
+        }
+    }
+
     @Test
     void testTaskWithoutTime() {
         Task taskWithoutTime = new Task("No Time Task", "Description", Status.NEW);
@@ -141,4 +204,140 @@ class TaskTimeTest {
         // Обновление должно быть разрешено, так как это та же самая задача
         assertEquals(LocalDateTime.of(2024, 1, 1, 10, 30), task1.getStartTime());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testIntersectionIndexMatchesPairwiseCheck() {
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Task> added = new ArrayList<>();
+
+        for (int i = 0; i < 2000; i++) {
+            // Маленькая сетка времени, чтобы часто встречались общие границы и одинаковые начала
+            Task candidate = new Task("Task", "", Status.NEW);
+            candidate.setStartTime(base.plusMinutes(15L * random.nextInt(200)));
+            candidate.setDuration(Duration.ofMinutes(15L * random.nextInt(5)));
+
+            boolean expected = false;
+            List<Task> existing = new ArrayList<>(taskManager.getTasks());
+            existing.addAll(taskManager.getSubtasks());
+            for (Task task : existing) {
+                if (task.getId() != candidate.getId() && taskManager.isTasksIntersect(candidate, task)) {
+                    expected = true;
+                }
+            }
+            assertEquals(expected, taskManager.isTaskIntersectWithAny(candidate));
+
+            if (!expected) {
+                taskManager.addNewTask(candidate);
+                added.add(candidate);
+            }
+            if (!added.isEmpty() && random.nextInt(4) == 0) {
+                taskManager.deleteTask(added.remove(random.nextInt(added.size())).getId());
+            }
+        }
+    }
+
+    @Test
+    void testTimeQueriesMatchFullScan() {
+        Random random = new Random(7);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < 500; i++) {
+            Task task = new Task("Task", "", Status.NEW);
+            task.setStartTime(base.plusMinutes(15L * random.nextInt(400)));
+            if (random.nextInt(10) > 0) { // часть задач без продолжительности
+                task.setDuration(Duration.ofMinutes(15L * random.nextInt(6)));
+            }
+            if (!taskManager.isTaskIntersectWithAny(task)) {
+                taskManager.addNewTask(task);
+            }
+        }
+
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime from = base.plusMinutes(15L * random.nextInt(400));
+            LocalDateTime to = from.plusMinutes(15L * random.nextInt(20));
+
+            List<Task> expectedRange = new ArrayList<>();
+            List<Task> expectedAt = new ArrayList<>();
+            for (Task task : taskManager.getPrioritizedTasks()) {
+                LocalDateTime start = task.getStartTime();
+                LocalDateTime end = task.getDuration() != null ? task.getEndTime() : start;
+                if (start.isBefore(to) && (!start.isBefore(from) || end.isAfter(from))) {
+                    expectedRange.add(task);
+                }
+                if (!start.isAfter(from) && end.isAfter(from)) {
+                    expectedAt.add(task);
+                }
+            }
+
+            List<Task> range = new ArrayList<>();
+            taskManager.getTasksInRange(from, to).forEach(range::add);
+            List<Task> at = new ArrayList<>();
+            taskManager.getTasksAt(from).forEach(at::add);
+            assertEquals(expectedRange, range);
+            assertEquals(expectedAt, at);
+        }
+    }
+
+    @Test
+    void testFindFreeSlot() {
+        taskManager.addNewTask(task1); // 10:00-11:00
+        taskManager.addNewTask(task2); // 11:00-11:30
+        Task later = new Task("Task 3", "", Status.NEW);
+        later.setStartTime(LocalDateTime.of(2024, 1, 1, 12, 0));
+        later.setDuration(Duration.ofMinutes(60));
+        taskManager.addNewTask(later);
+
+        // Между 11:30 и 12:00 помещается только окно до 30 минут
+        assertEquals(LocalDateTime.of(2024, 1, 1, 11, 30),
+                taskManager.findFreeSlot(LocalDateTime.of(2024, 1, 1, 10, 15), Duration.ofMinutes(30)));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 13, 0),
+                taskManager.findFreeSlot(LocalDateTime.of(2024, 1, 1, 10, 15), Duration.ofMinutes(45)));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 9, 0),
+                taskManager.findFreeSlot(LocalDateTime.of(2024, 1, 1, 9, 0), Duration.ofMinutes(60)));
+
+        // Рабочие часы: окно переносится на следующий день
+        assertEquals(LocalDateTime.of(2024, 1, 2, 9, 0),
+                taskManager.findFreeSlot(LocalDateTime.of(2024, 1, 1, 17, 45), Duration.ofMinutes(30),
+                        LocalTime.of(9, 0), LocalTime.of(18, 0)));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 9, 0),
+                taskManager.findFreeSlot(LocalDateTime.of(2024, 1, 1, 6, 0), Duration.ofMinutes(60),
+                        LocalTime.of(9, 0), LocalTime.of(18, 0)));
+
+        // Найденное окно принимается менеджером
+        Task fitting = new Task("Task 4", "", Status.NEW);
+        fitting.setStartTime(taskManager.findFreeSlot(LocalDateTime.of(2024, 1, 1, 10, 0), Duration.ofMinutes(30)));
+        fitting.setDuration(Duration.ofMinutes(30));
+        taskManager.addNewTask(fitting);
+        assertEquals(4, taskManager.getTasks().size());
+    }
+
+    @Test
+    void testScheduleTasks() {
+        taskManager.addNewTask(task1); // 10:00-11:00
+        taskManager.addNewTask(task2); // 11:00-11:30
+
+        Task low = new Task("Low", "", Status.NEW);
+        low.setDuration(Duration.ofMinutes(30));
+        Task high = new Task("High", "", Status.NEW);
+        high.setDuration(Duration.ofMinutes(60));
+        taskManager.addNewTask(high); // уже в менеджере, но без времени
+        Task late = new Task("Late", "", Status.NEW);
+        late.setDuration(Duration.ofMinutes(30));
+        Subtask subtask = new Subtask("Subtask", "", Status.NEW, epic.getId());
+        subtask.setDuration(Duration.ofMinutes(15));
+
+        List<Task> unscheduled = taskManager.scheduleTasks(List.of(
+                new ScheduleRequest(low, null, 1),
+                new ScheduleRequest(high, null, 5),
+                new ScheduleRequest(late, LocalDateTime.of(2024, 1, 1, 10, 20), 0),
+                new ScheduleRequest(subtask)), LocalDateTime.of(2024, 1, 1, 9, 0));
+
+        assertEquals(List.of(late), unscheduled);
+        assertNull(late.getStartTime());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 9, 0), taskManager.getTaskById(high.getId()).getStartTime());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 11, 30), low.getStartTime());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 12, 0), subtask.getStartTime());
+        assertEquals(subtask, taskManager.getSubtaskById(subtask.getId()));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 12, 15), taskManager.getEpicById(epic.getId()).getEndTime());
+    }
+}